@@ -0,0 +1,20 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.bringholm.minecraftdeobfuscator.ClassAnalysis")
+@Label("Class Analysis")
+@Description("A class scanned for its bridge methods or SwitchMap arrays")
+@Category({"Minecraft Deobfuscator", "Remap"})
+@StackTrace(false)
+class ClassAnalysisEvent extends Event {
+    @Label("Analysis")
+    String analysis;
+    @Label("Class Name")
+    String className;
+    @Label("Size")
+    @DataAmount
+    int size;
+    @Label("Members Found")
+    int found;
+}
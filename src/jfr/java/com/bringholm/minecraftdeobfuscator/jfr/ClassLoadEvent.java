@@ -0,0 +1,16 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.bringholm.minecraftdeobfuscator.ClassLoad")
+@Label("Class Load")
+@Description("A class read and inflated from the jar")
+@Category({"Minecraft Deobfuscator", "Jar"})
+@StackTrace(false)
+class ClassLoadEvent extends Event {
+    @Label("Class Name")
+    String className;
+    @Label("Size")
+    @DataAmount
+    int size;
+}
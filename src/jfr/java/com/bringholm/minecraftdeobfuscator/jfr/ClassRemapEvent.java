@@ -0,0 +1,19 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.bringholm.minecraftdeobfuscator.ClassRemap")
+@Label("Class Remap")
+@Description("The remapping of a single class")
+@Category({"Minecraft Deobfuscator", "Remap"})
+@StackTrace(false)
+class ClassRemapEvent extends Event {
+    @Label("Class Name")
+    String className;
+    @Label("Size")
+    @DataAmount
+    int size;
+    @Label("Remapped Size")
+    @DataAmount
+    int remappedSize;
+}
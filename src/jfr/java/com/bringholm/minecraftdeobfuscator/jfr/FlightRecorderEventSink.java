@@ -0,0 +1,71 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+/**
+ * Emits the events as Java Flight Recorder events, which are passed back as the tokens. This is created by
+ * {@link RemapEvents#enable()} by its name.
+ */
+class FlightRecorderEventSink implements RemapEventSink {
+    @Override
+    public Object beginClassLoad() {
+        ClassLoadEvent event = new ClassLoadEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endClassLoad(Object token, String className, int size) {
+        ClassLoadEvent event = (ClassLoadEvent) token;
+        event.className = className;
+        event.size = size;
+        event.commit();
+    }
+
+    @Override
+    public Object beginClassRemap() {
+        ClassRemapEvent event = new ClassRemapEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endClassRemap(Object token, String className, int size, int remappedSize) {
+        ClassRemapEvent event = (ClassRemapEvent) token;
+        event.className = className;
+        event.size = size;
+        event.remappedSize = remappedSize;
+        event.commit();
+    }
+
+    @Override
+    public Object beginHierarchyResolution() {
+        HierarchyResolutionEvent event = new HierarchyResolutionEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endHierarchyResolution(Object token, String className, String memberName, String descriptor) {
+        HierarchyResolutionEvent event = (HierarchyResolutionEvent) token;
+        event.className = className;
+        event.memberName = memberName;
+        event.descriptor = descriptor;
+        event.commit();
+    }
+
+    @Override
+    public Object beginClassAnalysis() {
+        ClassAnalysisEvent event = new ClassAnalysisEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endClassAnalysis(Object token, String analysis, String className, int size, int found) {
+        ClassAnalysisEvent event = (ClassAnalysisEvent) token;
+        event.analysis = analysis;
+        event.className = className;
+        event.size = size;
+        event.found = found;
+        event.commit();
+    }
+}
@@ -0,0 +1,17 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.bringholm.minecraftdeobfuscator.HierarchyResolution")
+@Label("Hierarchy Resolution")
+@Description("The lookup of a member without a mapping, walking up the hierarchy to the class that declared it")
+@Category({"Minecraft Deobfuscator", "Remap"})
+@StackTrace(false)
+class HierarchyResolutionEvent extends Event {
+    @Label("Class Name")
+    String className;
+    @Label("Member Name")
+    String memberName;
+    @Label("Descriptor")
+    String descriptor;
+}
@@ -0,0 +1,60 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * Finds the files the benchmarks run against. The mappings are the ones bundled in the mappings directory, and the
+ * jar is either a real minecraft server jar (the jar parameter of the benchmarks) or one generated from the mappings
+ * by {@link SyntheticJarGenerator}.
+ */
+final class BenchmarkSupport {
+    private static final String VERSION = "1.12";
+
+    private BenchmarkSupport() {
+    }
+
+    static File getClassMappingsFile(String mappingsDirectory) {
+        return new File(mappingsDirectory, "class-mappings-" + VERSION + ".txt");
+    }
+
+    static File getMemberMappingsFile(String mappingsDirectory) {
+        return new File(mappingsDirectory, "member-mappings-" + VERSION + ".txt");
+    }
+
+    static Mappings loadMappings(String mappingsDirectory) throws IOException {
+        try (InputStream classMappings = Files.newInputStream(getClassMappingsFile(mappingsDirectory).toPath());
+             InputStream memberMappings = Files.newInputStream(getMemberMappingsFile(mappingsDirectory).toPath())) {
+            return new Mappings(classMappings, memberMappings);
+        }
+    }
+
+    /**
+     * Gets the jar to benchmark, generating a synthetic one in the directory if no jar was given.
+     */
+    static File getJar(String jar, Mappings mappings, File directory) throws IOException {
+        if (!jar.isEmpty()) {
+            return new File(jar);
+        }
+        File file = new File(directory, "synthetic.jar");
+        new SyntheticJarGenerator(mappings, 0, 500).generate(file);
+        return file;
+    }
+
+    static File createTempDirectory() throws IOException {
+        return Files.createTempDirectory("minecraft-deobfuscator-jmh").toFile();
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
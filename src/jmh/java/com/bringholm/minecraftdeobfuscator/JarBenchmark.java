@@ -0,0 +1,93 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jario.JarWriter;
+import com.bringholm.minecraftdeobfuscator.jario.ZipArchive;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading every class of the jar, and the passes over the whole jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarBenchmark {
+    @Param("mappings")
+    public String mappingsDirectory;
+    @Param("")
+    public String jar;
+    @Param("1")
+    public int threads;
+    @Param("false")
+    public boolean memoryMapped;
+
+    private File directory;
+    private File jarFile;
+    private File classRemappedJar;
+    private File outputJar;
+    private Mappings mappings;
+    private DeobfuscationSession session;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkSupport.createTempDirectory();
+        mappings = BenchmarkSupport.loadMappings(mappingsDirectory);
+        jarFile = BenchmarkSupport.getJar(jar, mappings, directory);
+        classRemappedJar = new File(directory, "class_remapped.jar");
+        outputJar = new File(directory, "output.jar");
+        session = new DeobfuscationSession(DeobfuscationConfig.builder().threads(threads).memoryMapped(memoryMapped).build());
+        // The member pass works on the output of the class pass
+        try (JarLoader loader = new JarLoader(jarFile, memoryMapped); JarWriter writer = new JarWriter(classRemappedJar, mappings)) {
+            session.remapClasses(loader, writer, mappings);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+        BenchmarkSupport.delete(directory);
+    }
+
+    @Benchmark
+    public void loadClasses(Blackhole blackhole) throws IOException {
+        try (JarLoader loader = new JarLoader(jarFile, memoryMapped)) {
+            for (ZipArchive.Entry entry : loader.getEntries()) {
+                if (entry.getName().endsWith(".class")) {
+                    blackhole.consume(loader.loadClassFromJar(entry.getName().substring(0, entry.getName().length() - ".class".length())));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void remapClasses() throws IOException {
+        try (JarLoader loader = new JarLoader(jarFile, memoryMapped); JarWriter writer = new JarWriter(outputJar, mappings)) {
+            session.remapClasses(loader, writer, mappings);
+        }
+    }
+
+    @Benchmark
+    public void remapMembers() throws IOException {
+        try (JarLoader loader = new JarLoader(classRemappedJar, memoryMapped); JarWriter writer = new JarWriter(outputJar, mappings)) {
+            session.remapMembers(loader, writer, mappings);
+        }
+    }
+
+    /**
+     * The single pass that is used when no hashes are generated.
+     */
+    @Benchmark
+    public void remapJar() throws IOException {
+        try (JarLoader loader = new JarLoader(jarFile, memoryMapped); JarWriter writer = new JarWriter(outputJar, mappings)) {
+            session.remapJar(loader, writer, mappings);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the bundled mappings, from the text files and from the compiled cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MappingsBenchmark {
+    @Param("mappings")
+    public String mappingsDirectory;
+
+    private byte[] classMappings;
+    private byte[] memberMappings;
+    private File directory;
+    private File classMappingsFile;
+    private File memberMappingsFile;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() throws IOException {
+        classMappings = Files.readAllBytes(BenchmarkSupport.getClassMappingsFile(mappingsDirectory).toPath());
+        memberMappings = Files.readAllBytes(BenchmarkSupport.getMemberMappingsFile(mappingsDirectory).toPath());
+        directory = BenchmarkSupport.createTempDirectory();
+        classMappingsFile = new File(directory, "class-mappings.txt");
+        memberMappingsFile = new File(directory, "member-mappings.txt");
+        Files.copy(BenchmarkSupport.getClassMappingsFile(mappingsDirectory).toPath(), classMappingsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(BenchmarkSupport.getMemberMappingsFile(mappingsDirectory).toPath(), memberMappingsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // Compiles the cache, so that the benchmark only measures reading it
+        MappingsCache.load(classMappingsFile, memberMappingsFile, null);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        BenchmarkSupport.delete(directory);
+    }
+
+    @Benchmark
+    public Mappings parse() {
+        return new Mappings(new ByteArrayInputStream(classMappings), new ByteArrayInputStream(memberMappings));
+    }
+
+    @Benchmark
+    public Mappings parseParallel() {
+        return new Mappings(new ByteArrayInputStream(classMappings), new ByteArrayInputStream(memberMappings), executor);
+    }
+
+    @Benchmark
+    public Mappings loadCache() throws IOException {
+        return MappingsCache.load(classMappingsFile, memberMappingsFile, null);
+    }
+}
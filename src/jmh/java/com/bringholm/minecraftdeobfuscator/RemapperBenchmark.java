@@ -0,0 +1,136 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jario.ZipArchive;
+import com.bringholm.minecraftdeobfuscator.remapper.AnonymousClassNameRemapper;
+import com.bringholm.minecraftdeobfuscator.remapper.MemberRemapper;
+import com.bringholm.minecraftdeobfuscator.util.LocalVariableNameHelper;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Remapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookups done for every class, member and local variable, using the names referenced in the jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RemapperBenchmark {
+    @Param("mappings")
+    public String mappingsDirectory;
+    @Param("")
+    public String jar;
+
+    private File directory;
+    private JarLoader loader;
+    private Mappings mappings;
+    private Remapper classRemapper;
+    private MemberRemapper memberRemapper;
+    private List<String> classNames = new ArrayList<>();
+    private List<String[]> methodReferences = new ArrayList<>();
+    private List<String[]> fieldReferences = new ArrayList<>();
+    private List<String> localVariableDescs = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = BenchmarkSupport.createTempDirectory();
+        mappings = BenchmarkSupport.loadMappings(mappingsDirectory);
+        loader = new JarLoader(BenchmarkSupport.getJar(jar, mappings, directory), false);
+        classRemapper = new AnonymousClassNameRemapper(mappings.getClassMappings());
+        memberRemapper = new MemberRemapper(mappings.getMemberMappings(), loader, classRemapper);
+        for (ZipArchive.Entry entry : loader.getEntries()) {
+            String name = entry.getName();
+            if (!name.endsWith(".class") || name.indexOf('/') != -1) {
+                continue;
+            }
+            classNames.add(name.substring(0, name.length() - ".class".length()));
+            new ClassReader(loader.readEntry(entry)).accept(new ReferenceCollector(), ClassReader.SKIP_FRAMES);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loader.close();
+        BenchmarkSupport.delete(directory);
+    }
+
+    @Benchmark
+    public void mapClassNames(Blackhole blackhole) {
+        for (String className : classNames) {
+            blackhole.consume(classRemapper.map(className));
+        }
+    }
+
+    @Benchmark
+    public void mapMethodNames(Blackhole blackhole) {
+        for (String[] reference : methodReferences) {
+            blackhole.consume(memberRemapper.mapMethodName(reference[0], reference[1], reference[2]));
+        }
+    }
+
+    @Benchmark
+    public void mapFieldNames(Blackhole blackhole) {
+        for (String[] reference : fieldReferences) {
+            blackhole.consume(memberRemapper.mapFieldName(reference[0], reference[1], reference[2]));
+        }
+    }
+
+    @Benchmark
+    public void getVariableNames(Blackhole blackhole) {
+        LocalVariableNameHelper.Indices indices = new LocalVariableNameHelper.Indices();
+        for (int i = 0; i < localVariableDescs.size(); i++) {
+            // A new method every 8 variables, like the LocalVariableMethodRemapper
+            if (i % 8 == 0) {
+                indices.reset();
+            }
+            blackhole.consume(LocalVariableNameHelper.getVariableName("☃", localVariableDescs.get(i), indices));
+        }
+    }
+
+    /**
+     * Building the member lookup table, which is done once per run.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MemberRemapper createMemberRemapper() throws IOException {
+        return new MemberRemapper(mappings.getMemberMappings(), loader, classRemapper);
+    }
+
+    private class ReferenceCollector extends ClassVisitor {
+        private ReferenceCollector() {
+            super(Opcodes.ASM6);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            for (Type type : Type.getArgumentTypes(desc)) {
+                localVariableDescs.add(classRemapper.mapDesc(type.getDescriptor()));
+            }
+            return new MethodVisitor(Opcodes.ASM6) {
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                    methodReferences.add(new String[]{owner, name, desc});
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                    fieldReferences.add(new String[]{owner, name, desc});
+                }
+            };
+        }
+    }
+}
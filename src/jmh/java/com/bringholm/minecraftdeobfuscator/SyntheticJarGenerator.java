@@ -0,0 +1,295 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates an obfuscated jar that matches a set of mappings, for benchmarking without a real minecraft jar. Every
+ * class in the class mappings is generated with the fields and methods of the member mappings, in a random (but
+ * reproducible) hierarchy. The method bodies reference members of other classes, often through a subclass of the
+ * class declaring them, and the parameters have local variables, so all of the remapping paths are used. Some
+ * classes outside of the minecraft package are added as well, like the libraries bundled in the server jar.
+ * <p>
+ * The generated code isn't meant to pass verification, it's never loaded.
+ */
+public class SyntheticJarGenerator {
+    private static final String NMS_PACKAGE = "net/minecraft/server/";
+    private static final int REFERENCES_PER_METHOD = 8;
+
+    private final Mappings mappings;
+    private final Random random;
+    private final int libraryClasses;
+    private final Remapper obfuscator;
+    private final List<String> classNames = new ArrayList<>();
+    private final Map<String, ClassModel> classes = new HashMap<>();
+    private final List<Member> members = new ArrayList<>();
+
+    /**
+     * @param libraryClasses the amount of classes to add outside of the minecraft package
+     */
+    public SyntheticJarGenerator(Mappings mappings, long seed, int libraryClasses) {
+        this.mappings = mappings;
+        this.random = new Random(seed);
+        this.libraryClasses = libraryClasses;
+        Map<String, String> reverseMappings = new HashMap<>();
+        for (Map.Entry<String, String> entry : mappings.getClassMappings().entrySet()) {
+            reverseMappings.put(entry.getValue(), entry.getKey());
+        }
+        this.obfuscator = new SimpleRemapper(reverseMappings);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: SyntheticJarGenerator <class mappings> <member mappings> <output jar> [library classes]");
+            return;
+        }
+        Mappings mappings;
+        try (InputStream classMappings = new FileInputStream(args[0]); InputStream memberMappings = new FileInputStream(args[1])) {
+            mappings = new Mappings(classMappings, memberMappings);
+        }
+        int libraryClasses = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        new SyntheticJarGenerator(mappings, 0, libraryClasses).generate(new File(args[2]));
+    }
+
+    public void generate(File output) throws IOException {
+        createClasses();
+        createMembers();
+        try (JarOutputStream outputStream = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            for (String name : classNames) {
+                outputStream.putNextEntry(new JarEntry(name + ".class"));
+                outputStream.write(writeClass(classes.get(name)));
+                outputStream.closeEntry();
+            }
+            for (int i = 0; i < libraryClasses; i++) {
+                String name = "org/example/library/Library" + i;
+                outputStream.putNextEntry(new JarEntry(name + ".class"));
+                outputStream.write(writeLibraryClass(name));
+                outputStream.closeEntry();
+            }
+            outputStream.putNextEntry(new JarEntry("assets/minecraft/lang/en_us.lang"));
+            outputStream.write("synthetic=Synthetic\n".getBytes("UTF-8"));
+            outputStream.closeEntry();
+        }
+    }
+
+    private void createClasses() {
+        classNames.addAll(mappings.getClassMappings().keySet());
+        Collections.sort(classNames);
+        List<ClassModel> interfaces = new ArrayList<>();
+        List<ClassModel> superClasses = new ArrayList<>();
+        for (String name : classNames) {
+            ClassModel model = new ClassModel(name);
+            model.isInterface = random.nextInt(5) == 0;
+            if (!model.isInterface && !superClasses.isEmpty() && random.nextInt(5) < 3) {
+                model.superClass = superClasses.get(random.nextInt(superClasses.size()));
+                model.superClass.subTypes.add(model);
+            }
+            for (int i = random.nextInt(3); i > 0 && !interfaces.isEmpty(); i--) {
+                ClassModel interfaceModel = interfaces.get(random.nextInt(interfaces.size()));
+                if (!model.interfaces.contains(interfaceModel)) {
+                    model.interfaces.add(interfaceModel);
+                    interfaceModel.subTypes.add(model);
+                }
+            }
+            (model.isInterface ? interfaces : superClasses).add(model);
+            classes.put(name, model);
+        }
+    }
+
+    private void createMembers() {
+        for (Map.Entry<String, String> entry : mappings.getMemberMappings().entrySet()) {
+            String key = entry.getKey();
+            int dot = key.lastIndexOf('.', key.indexOf('(') == -1 ? key.length() : key.indexOf('('));
+            ClassModel owner = classes.get(obfuscator.map(key.substring(0, dot)));
+            if (owner == null) {
+                continue;
+            }
+            String member = key.substring(dot + 1);
+            Member model;
+            if (member.indexOf('(') == -1) {
+                model = new Member(owner, member, "I", false);
+                owner.fields.add(model);
+            } else {
+                String desc = obfuscator.mapMethodDesc(member.substring(member.indexOf('(')));
+                model = new Member(owner, member.substring(0, member.indexOf('(')), desc, true);
+                owner.methods.add(model);
+            }
+            members.add(model);
+        }
+        // The mappings are in a hash map, so sort them to get the same jar every time
+        members.sort(Comparator.comparing((Member member) -> member.owner.name).thenComparing(member -> member.name).thenComparing(member -> member.desc));
+        for (ClassModel model : classes.values()) {
+            model.fields.sort(Comparator.comparing((Member member) -> member.name).thenComparing(member -> member.desc));
+            model.methods.sort(Comparator.comparing((Member member) -> member.name).thenComparing(member -> member.desc));
+        }
+    }
+
+    private byte[] writeClass(ClassModel model) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        int access = model.isInterface ? Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT : Opcodes.ACC_PUBLIC;
+        String[] interfaces = new String[model.interfaces.size()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = model.interfaces.get(i).name;
+        }
+        String superName = model.superClass == null ? "java/lang/Object" : model.superClass.name;
+        classWriter.visit(Opcodes.V1_6, access, model.name, null, superName, interfaces);
+        for (Member field : model.fields) {
+            classWriter.visitField(model.isInterface ? Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL : Opcodes.ACC_PROTECTED,
+                    field.name, field.desc, null, null).visitEnd();
+        }
+        if (!model.isInterface) {
+            MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            constructor.visitCode();
+            constructor.visitVarInsn(Opcodes.ALOAD, 0);
+            constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+            constructor.visitInsn(Opcodes.RETURN);
+            constructor.visitMaxs(0, 0);
+            constructor.visitEnd();
+        }
+        for (Member method : model.methods) {
+            if (model.isInterface) {
+                classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, method.name, method.desc, null, null).visitEnd();
+            } else {
+                writeMethod(classWriter, method);
+            }
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private void writeMethod(ClassWriter classWriter, Member method) {
+        MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, method.name, method.desc, null, null);
+        methodVisitor.visitCode();
+        Label start = new Label();
+        Label end = new Label();
+        methodVisitor.visitLabel(start);
+        for (int i = 0; i < REFERENCES_PER_METHOD && !members.isEmpty(); i++) {
+            Member target = members.get(random.nextInt(members.size()));
+            String owner = pickReferenceOwner(target.owner).name;
+            if (target.isMethod) {
+                methodVisitor.visitInsn(Opcodes.ACONST_NULL);
+                for (Type argument : Type.getArgumentTypes(target.desc)) {
+                    pushDefault(methodVisitor, argument);
+                }
+                methodVisitor.visitMethodInsn(target.owner.isInterface ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL, owner,
+                        target.name, target.desc, target.owner.isInterface);
+                Type returnType = Type.getReturnType(target.desc);
+                if (returnType.getSize() > 0) {
+                    methodVisitor.visitInsn(returnType.getSize() == 2 ? Opcodes.POP2 : Opcodes.POP);
+                }
+            } else if (target.owner.isInterface) {
+                methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, owner, target.name, target.desc);
+                methodVisitor.visitInsn(Opcodes.POP);
+            } else {
+                methodVisitor.visitInsn(Opcodes.ACONST_NULL);
+                methodVisitor.visitFieldInsn(Opcodes.GETFIELD, owner, target.name, target.desc);
+                methodVisitor.visitInsn(Opcodes.POP);
+            }
+        }
+        Type returnType = Type.getReturnType(method.desc);
+        pushDefault(methodVisitor, returnType);
+        methodVisitor.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        methodVisitor.visitLabel(end);
+        methodVisitor.visitLocalVariable("this", "L" + method.owner.name + ";", null, start, end, 0);
+        int index = 1;
+        for (Type argument : Type.getArgumentTypes(method.desc)) {
+            methodVisitor.visitLocalVariable("☃", argument.getDescriptor(), null, start, end, index);
+            index += argument.getSize();
+        }
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    /**
+     * Picks the class the member is referenced through, which is usually the declaring class itself, but sometimes
+     * one of its subclasses, so the declarer has to be looked up.
+     */
+    private ClassModel pickReferenceOwner(ClassModel declarer) {
+        ClassModel owner = declarer;
+        while (!owner.subTypes.isEmpty() && random.nextInt(3) == 0) {
+            ClassModel subType = owner.subTypes.get(random.nextInt(owner.subTypes.size()));
+            if (subType.isInterface != declarer.isInterface) {
+                break;
+            }
+            owner = subType;
+        }
+        return owner;
+    }
+
+    private static void pushDefault(MethodVisitor methodVisitor, Type type) {
+        switch (type.getSort()) {
+            case Type.VOID:
+                break;
+            case Type.LONG:
+                methodVisitor.visitInsn(Opcodes.LCONST_0);
+                break;
+            case Type.FLOAT:
+                methodVisitor.visitInsn(Opcodes.FCONST_0);
+                break;
+            case Type.DOUBLE:
+                methodVisitor.visitInsn(Opcodes.DCONST_0);
+                break;
+            case Type.ARRAY:
+            case Type.OBJECT:
+                methodVisitor.visitInsn(Opcodes.ACONST_NULL);
+                break;
+            default:
+                methodVisitor.visitInsn(Opcodes.ICONST_0);
+        }
+    }
+
+    private byte[] writeLibraryClass(String name) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+        for (int i = 0; i < 8; i++) {
+            MethodVisitor methodVisitor = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "method" + i, "(I)I", null, null);
+            methodVisitor.visitCode();
+            methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+            methodVisitor.visitLdcInsn(i);
+            methodVisitor.visitInsn(Opcodes.IADD);
+            methodVisitor.visitInsn(Opcodes.IRETURN);
+            methodVisitor.visitMaxs(0, 0);
+            methodVisitor.visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static class ClassModel {
+        private final String name;
+        private boolean isInterface;
+        private ClassModel superClass;
+        private List<ClassModel> interfaces = new ArrayList<>();
+        private List<ClassModel> subTypes = new ArrayList<>();
+        private List<Member> fields = new ArrayList<>();
+        private List<Member> methods = new ArrayList<>();
+
+        private ClassModel(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Member {
+        private final ClassModel owner;
+        private final String name;
+        private final String desc;
+        private final boolean isMethod;
+
+        private Member(ClassModel owner, String name, String desc, boolean isMethod) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.isMethod = isMethod;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import org.apache.commons.codec.binary.Hex;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * Deobfuscates several jars with the same mappings in one JVM, so the mappings are only parsed once and the later
+ * jars run on code that has already been compiled by the JIT. The jars either come from a manifest, or are sent to
+ * a daemon listening on a local port.
+ * <p>
+ * Both take one jar per line, as the path of the jar and the path of the deobfuscated output, separated by a tab,
+ * or by a space if there is no tab. Empty lines and lines starting with # are skipped.
+ * <p>
+ * Any local user can connect to the port, so the daemon writes a random token to a file that only the user running
+ * it can read, and the first line sent on every connection has to be that token.
+ */
+public class BatchDeobfuscator {
+    private static final String SHUTDOWN_REQUEST = "shutdown";
+    private static final int TOKEN_LENGTH = 32;
+
+    private final DeobfuscationSession session;
+    private final Mappings mappings;
+    private final Remapper classRemapper;
+
+    /**
+     * @param classRemapper the class remapper of the mappings, which doesn't depend on the jar and is shared by all of them
+     */
+    public BatchDeobfuscator(DeobfuscationSession session, Mappings mappings, Remapper classRemapper) {
+        this.session = session;
+        this.mappings = mappings;
+        this.classRemapper = classRemapper;
+    }
+
+    /**
+     * Deobfuscates the jars in the manifest, with the relative paths resolved against the directory of the manifest.
+     * A jar that fails to deobfuscate doesn't stop the rest. Returns how many of the jars failed.
+     */
+    public int runManifest(File manifest) throws IOException {
+        List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        int jars = 0;
+        int failed = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            jars++;
+            File[] files = parseRequest(line, directory);
+            if (files == null) {
+                System.err.println("Malformed manifest entry at ln " + (i + 1) + "!");
+                failed++;
+                continue;
+            }
+            try {
+                MinecraftDeobfuscator.deobfuscateJar(session, files[0], files[1], mappings, classRemapper);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to deobfuscate " + files[0] + "!");
+                e.printStackTrace();
+                failed++;
+            }
+        }
+        System.out.println("Deobfuscated " + (jars - failed) + " of " + jars + " jars from " + manifest.getName());
+        return failed;
+    }
+
+    /**
+     * Listens for jars to deobfuscate on the port of the loopback address, until a client sends "shutdown". Each
+     * request is answered with a line starting with OK or FAILED. The requests are handled one at a time, since the
+     * jars are already processed on all of the threads.
+     *
+     * @param tokenFile the file to write the token that the clients have to send first to. It is replaced if it
+     *                  already exists, and deleted once the daemon shuts down.
+     */
+    public void serve(int port, File tokenFile) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            byte[] token = createToken(tokenFile.toPath());
+            try {
+                System.out.println("Listening for jars to deobfuscate on port " + serverSocket.getLocalPort() + ", with the token in "
+                        + tokenFile.getName() + "...");
+                while (true) {
+                    try (Socket socket = serverSocket.accept()) {
+                        if (!handleConnection(socket, token)) {
+                            System.out.println("Shutting down...");
+                            return;
+                        }
+                    } catch (IOException e) {
+                        // Only this client is affected, the next one can still connect
+                        System.err.println("Failed to handle a connection!");
+                        e.printStackTrace();
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(tokenFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Generates a random token and writes it to the file, which is created so that only the owner can read it.
+     */
+    private static byte[] createToken(Path file) throws IOException {
+        byte[] random = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(random);
+        byte[] token = Hex.encodeHexString(random).getBytes(StandardCharsets.UTF_8);
+        // Created anew so that the permissions are set before the token is written, and a link put there isn't followed
+        Files.deleteIfExists(file);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+            File tokenFile = file.toFile();
+            if (!tokenFile.setReadable(false, false) || !tokenFile.setReadable(true, true)) {
+                Files.delete(file);
+                throw new IOException("Failed to make " + file + " readable only by its owner");
+            }
+        }
+        Files.write(file, token);
+        return token;
+    }
+
+    /**
+     * Handles the requests of a client until it disconnects, and returns false if it asked the daemon to shut down.
+     * A client that doesn't start with the token is disconnected without anything it sent being handled.
+     */
+    private boolean handleConnection(Socket socket, byte[] token) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        String line = reader.readLine();
+        // Compared in constant time, so the token can't be guessed one character at a time
+        if (line == null || !MessageDigest.isEqual(line.trim().getBytes(StandardCharsets.UTF_8), token)) {
+            System.err.println("Refused a connection without the daemon token!");
+            writer.println("FAILED Unauthorized");
+            return true;
+        }
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            if (line.equals(SHUTDOWN_REQUEST)) {
+                writer.println("OK");
+                return false;
+            }
+            // Relative paths are resolved against the working directory of the daemon, as the client's isn't known
+            File[] files = parseRequest(line, null);
+            if (files == null) {
+                writer.println("FAILED Malformed request");
+                continue;
+            }
+            long startTime = System.currentTimeMillis();
+            try {
+                MinecraftDeobfuscator.deobfuscateJar(session, files[0], files[1], mappings, classRemapper);
+                writer.println("OK " + (System.currentTimeMillis() - startTime) + "ms");
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to deobfuscate " + files[0] + "!");
+                e.printStackTrace();
+                writer.println("FAILED " + e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the jar and the output file of a request, or null if it is malformed.
+     *
+     * @param directory the directory to resolve relative paths against, or null for the working directory
+     */
+    private static File[] parseRequest(String line, File directory) {
+        String[] tokens = line.split(line.indexOf('\t') == -1 ? " +" : "\t+");
+        if (tokens.length != 2) {
+            return null;
+        }
+        File[] files = new File[2];
+        for (int i = 0; i < files.length; i++) {
+            File file = new File(tokens[i]);
+            files[i] = file.isAbsolute() || directory == null ? file : new File(directory, tokens[i]);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,116 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.ClassData;
+import com.bringholm.minecraftdeobfuscator.util.CpuClock;
+import com.bringholm.minecraftdeobfuscator.util.StructuralHasher;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the hashes of the mapped classes while the jar is being remapped, so that the hash mappings don't need a
+ * pass over the jar of their own. Each class gets two hashes of its class remapped bytecode: the MD5 of the bytes,
+ * and a {@link StructuralHasher structural hash} which stays the same when the class is only compiled differently.
+ * This is called from the threads that remap the classes.
+ */
+public class ClassHasher {
+    private final Mappings mappings;
+    private final Remapper classRemapper;
+    // Obfuscated name -> hashes
+    private final Map<String, Hashes> hashes = new ConcurrentHashMap<>();
+    private boolean timed;
+    private final LongAdder hashTime = new LongAdder();
+    private final LongAdder hashCpuTime = new LongAdder();
+
+    public ClassHasher(Mappings mappings, Remapper classRemapper) {
+        this.mappings = mappings;
+        this.classRemapper = classRemapper;
+    }
+
+    /**
+     * Sets whether to measure the time spent hashing, for {@link #getHashTime()} and {@link #getHashCpuTime()}.
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Hashes the class if it has a mapping. This has to be given the original bytecode, before it is remapped.
+     */
+    public void hash(ClassData data) {
+        if (!mappings.getClassMappings().containsKey(data.getInternalName())) {
+            return;
+        }
+        if (!timed) {
+            hashes.put(data.getInternalName(), hash(data.getBytecode(), classRemapper, mappings));
+            return;
+        }
+        long startTime = System.nanoTime();
+        long startCpuTime = CpuClock.threadTime();
+        hashes.put(data.getInternalName(), hash(data.getBytecode(), classRemapper, mappings));
+        hashTime.add(System.nanoTime() - startTime);
+        hashCpuTime.add(CpuClock.elapsed(startCpuTime, CpuClock.threadTime()));
+    }
+
+    /**
+     * Hashes the class the way it looks once its class names are remapped with the mappings.
+     */
+    public static Hashes hash(byte[] bytecode, Remapper classRemapper, Mappings mappings) {
+        byte[] classRemapped = DeobfuscationSession.remapClassNames(bytecode, classRemapper, mappings);
+        return new Hashes(DigestUtils.md5Hex(classRemapped), StructuralHasher.hash(classRemapped));
+    }
+
+    /**
+     * Writes the class mappings with the hashes of each class that was found in the jar.
+     */
+    public void writeHashMappings(PrintWriter writer) {
+        for (Map.Entry<String, String> entry : mappings.getClassMappings().entrySet()) {
+            Hashes classHashes = hashes.get(entry.getKey());
+            if (classHashes != null) {
+                writer.println(entry.getKey() + " " + entry.getValue() + " " + classHashes.getHash() + " " + classHashes.getStructuralHash());
+            }
+        }
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    /**
+     * Gets the time spent hashing the classes, summed up over all of the threads, in nanoseconds. This is only
+     * measured if the hasher is {@link #setTimed(boolean) timed}.
+     */
+    public long getHashTime() {
+        return hashTime.sum();
+    }
+
+    /**
+     * Gets the CPU time spent hashing the classes, summed up over all of the threads, in nanoseconds. This is -1 if
+     * the CPU time can't be measured.
+     */
+    public long getHashCpuTime() {
+        return CpuClock.threadTime() == -1 ? -1 : hashCpuTime.sum();
+    }
+
+    public static class Hashes {
+        private final String hash;
+        private final String structuralHash;
+
+        private Hashes(String hash, String structuralHash) {
+            this.hash = hash;
+            this.structuralHash = structuralHash;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getStructuralHash() {
+            return structuralHash;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.ClassHierarchy;
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jario.ZipArchive;
+import com.bringholm.minecraftdeobfuscator.remapper.AnonymousClassNameRemapper;
+import com.bringholm.minecraftdeobfuscator.util.ConstantPoolReader;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Carries the class mappings of one version of the jar over to another version, where the classes have been
+ * obfuscated to different names. The classes are first matched by the hashes in the mappings, which only finds the
+ * classes that didn't change at all. The rest are matched by their structure, which needs the jar the mappings are
+ * for: each class gets a fingerprint that doesn't depend on the obfuscated names, made up of its kind, supertypes,
+ * member counts, member descriptors (with the unmatched classes of the jar left out), and the constants and outside
+ * members it references. Only the classes sharing their member counts, or one of the rarer features, are compared, so
+ * matching doesn't have to compare every pair of classes.
+ */
+public class ClassMatcher {
+    // How similar two fingerprints have to be for the classes to be matched, from 0 to 1
+    private static final double MIN_SIMILARITY = 0.6;
+    // Features that more classes than this have are too common to narrow down the candidates
+    private static final int MAX_FEATURE_FREQUENCY = 16;
+    // Obfuscated member names are one or two characters, the longer ones are kept by the obfuscator
+    private static final int MAX_OBFUSCATED_NAME_LENGTH = 2;
+    private static final Pattern ANONYMOUS_CLASS = Pattern.compile(".*\\$[0-9]+");
+
+    private final Mappings mappings;
+    private final JarLoader loader;
+    // New obfuscated name -> deobfuscated name, in the order of the jar
+    private final Map<String, String> matches = new LinkedHashMap<>();
+    // The old obfuscated names that have been matched
+    private final Set<String> matchedClasses = new HashSet<>();
+    private int hashMatches;
+    private int structureMatches;
+
+    /**
+     * @param mappings the mappings to carry over
+     * @param loader   the jar to generate the mappings for
+     */
+    public ClassMatcher(Mappings mappings, JarLoader loader) {
+        this.mappings = mappings;
+        this.loader = loader;
+    }
+
+    /**
+     * Matches the classes whose class remapped bytecode has the same hash as one of the mappings, or failing that the
+     * same structural hash, which still matches when the class was only compiled differently.
+     */
+    public void matchHashes() throws IOException {
+        if (!mappings.hasHashes()) {
+            return;
+        }
+        Remapper remapper = new AnonymousClassNameRemapper(mappings.getClassMappings());
+        for (ZipArchive.Entry entry : loader.getEntries()) {
+            String className = getClassName(entry);
+            if (className == null || matches.containsKey(className)) {
+                continue;
+            }
+            ClassHasher.Hashes hashes = ClassHasher.hash(loader.readEntry(entry), remapper, mappings);
+            String oldClassName = mappings.getClassWithHash(hashes.getHash());
+            if (oldClassName == null) {
+                oldClassName = mappings.getClassWithStructuralHash(hashes.getStructuralHash());
+            }
+            if (oldClassName != null && matchedClasses.add(oldClassName)) {
+                matches.put(className, mappings.getClassMappings().get(oldClassName));
+                hashMatches++;
+            }
+        }
+    }
+
+    /**
+     * Matches the remaining classes to the classes of the jar that the mappings are for by their structure. This is
+     * done in rounds, since a matched class helps telling apart the classes that refer to it: the classes of the jar
+     * show up in the fingerprints as their mapped name once they are matched, and as * until then. Only the pairs
+     * that are each other's single most similar class are matched, so a class that looks like several others is
+     * left alone until something tells them apart.
+     */
+    public void matchStructures(JarLoader oldLoader) throws IOException {
+        ClassHierarchy oldHierarchy = oldLoader.getHierarchy();
+        ClassHierarchy hierarchy = loader.getHierarchy();
+        Map<String, byte[]> oldClasses = readClasses(oldLoader, className -> mappings.getClassMappings().containsKey(className));
+        Map<String, byte[]> newClasses = readClasses(loader, className -> true);
+        Function<String, String> oldTypeNames = className -> oldHierarchy.getClass(className) == null ? className
+                : matchedClasses.contains(className) ? mappings.getClassMappings().get(className) : "*";
+        Function<String, String> newTypeNames = className -> hierarchy.getClass(className) == null ? className : matches.getOrDefault(className, "*");
+        int matched;
+        do {
+            oldClasses.keySet().removeAll(matchedClasses);
+            newClasses.keySet().removeAll(matches.keySet());
+            List<Fingerprint> oldFingerprints = new ArrayList<>();
+            for (Map.Entry<String, byte[]> entry : oldClasses.entrySet()) {
+                oldFingerprints.add(new Fingerprint(entry.getKey(), entry.getValue(), oldHierarchy, oldTypeNames));
+            }
+            List<Fingerprint> newFingerprints = new ArrayList<>();
+            for (Map.Entry<String, byte[]> entry : newClasses.entrySet()) {
+                newFingerprints.add(new Fingerprint(entry.getKey(), entry.getValue(), hierarchy, newTypeNames));
+            }
+            matched = matchRound(oldFingerprints, newFingerprints);
+            structureMatches += matched;
+        } while (matched > 0);
+    }
+
+    private static Map<String, byte[]> readClasses(JarLoader loader, Predicate<String> classFilter) throws IOException {
+        // Sorted, so that the matches come out the same every time
+        Map<String, byte[]> classes = new TreeMap<>();
+        for (ZipArchive.Entry entry : loader.getEntries()) {
+            String className = getClassName(entry);
+            if (className != null && classFilter.test(className)) {
+                classes.put(className, loader.readEntry(entry));
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Matches the pairs of classes that are each other's single most similar class, and returns how many there were.
+     */
+    private int matchRound(List<Fingerprint> oldFingerprints, List<Fingerprint> newFingerprints) {
+        Map<String, List<Fingerprint>> byShape = new HashMap<>();
+        Map<String, List<Fingerprint>> byFeature = new HashMap<>();
+        for (Fingerprint fingerprint : oldFingerprints) {
+            byShape.computeIfAbsent(fingerprint.shape, key -> new ArrayList<>()).add(fingerprint);
+            for (String feature : fingerprint.features.keySet()) {
+                if (isDistinctive(feature)) {
+                    byFeature.computeIfAbsent(feature, key -> new ArrayList<>()).add(fingerprint);
+                }
+            }
+        }
+        Map<String, Candidate> bestCandidates = new HashMap<>();
+        Map<String, Candidate> bestOldCandidates = new HashMap<>();
+        Set<String> tied = new HashSet<>();
+        Set<String> tiedOld = new HashSet<>();
+        for (Fingerprint fingerprint : newFingerprints) {
+            Set<Fingerprint> compared = new HashSet<>(byShape.getOrDefault(fingerprint.shape, Collections.emptyList()));
+            for (String feature : fingerprint.features.keySet()) {
+                List<Fingerprint> sharing = byFeature.get(feature);
+                if (sharing != null && sharing.size() <= MAX_FEATURE_FREQUENCY) {
+                    compared.addAll(sharing);
+                }
+            }
+            for (Fingerprint oldFingerprint : compared) {
+                double similarity = fingerprint.getSimilarity(oldFingerprint);
+                if (similarity >= MIN_SIMILARITY) {
+                    Candidate candidate = new Candidate(fingerprint.className, oldFingerprint.className, similarity);
+                    offer(bestCandidates, tied, candidate.className, candidate);
+                    offer(bestOldCandidates, tiedOld, candidate.oldClassName, candidate);
+                }
+            }
+        }
+        int matched = 0;
+        for (Fingerprint fingerprint : newFingerprints) {
+            Candidate candidate = bestCandidates.get(fingerprint.className);
+            if (candidate != null && !tied.contains(candidate.className) && !tiedOld.contains(candidate.oldClassName)
+                    && bestOldCandidates.get(candidate.oldClassName) == candidate) {
+                matches.put(candidate.className, mappings.getClassMappings().get(candidate.oldClassName));
+                matchedClasses.add(candidate.oldClassName);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static void offer(Map<String, Candidate> bestCandidates, Set<String> tied, String className, Candidate candidate) {
+        Candidate best = bestCandidates.get(className);
+        if (best == null || candidate.similarity > best.similarity) {
+            bestCandidates.put(className, candidate);
+            tied.remove(className);
+        } else if (candidate.similarity == best.similarity) {
+            tied.add(className);
+        }
+    }
+
+    /**
+     * Gets the obfuscated name of the class in the entry, or null if it isn't a class that can have a mapping of
+     * its own. Anonymous classes are named after their outer class.
+     */
+    private static String getClassName(ZipArchive.Entry entry) {
+        String name = entry.getName();
+        if (!name.endsWith(".class") || name.indexOf('/') != -1) {
+            return null;
+        }
+        name = name.substring(0, name.length() - ".class".length());
+        return ANONYMOUS_CLASS.matcher(name).matches() ? null : name;
+    }
+
+    private static boolean isDistinctive(String feature) {
+        // Constants, references to classes outside of the jar and names that weren't obfuscated
+        return feature.startsWith("k:") || feature.startsWith("x:") || feature.startsWith("n:");
+    }
+
+    /**
+     * Writes the matched classes in the class mappings format, with the hashes of each class remapped with the new
+     * mappings, so that they can be matched again once the next version is out.
+     */
+    public void writeMappings(PrintWriter writer) throws IOException {
+        Mappings newMappings = new Mappings(matches);
+        Remapper remapper = new AnonymousClassNameRemapper(matches);
+        for (Map.Entry<String, String> entry : matches.entrySet()) {
+            byte[] bytecode = loader.loadClassFromJar(entry.getKey()).getBytecode();
+            ClassHasher.Hashes hashes = ClassHasher.hash(bytecode, remapper, newMappings);
+            writer.println(entry.getKey() + " " + entry.getValue() + " " + hashes.getHash() + " " + hashes.getStructuralHash());
+        }
+    }
+
+    public int getHashMatches() {
+        return hashMatches;
+    }
+
+    public int getStructureMatches() {
+        return structureMatches;
+    }
+
+    /**
+     * Gets how many of the classes in the mappings weren't matched to a class in the jar.
+     */
+    public int getUnmatchedClasses() {
+        return mappings.getClassMappings().size() - matchedClasses.size();
+    }
+
+    private static class Fingerprint {
+        private static final int KIND_ACCESS = Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT | Opcodes.ACC_ENUM | Opcodes.ACC_ANNOTATION;
+
+        private final String className;
+        private final ClassHierarchy hierarchy;
+        private final Function<String, String> typeNames;
+        // The kind, supertypes and member counts, which classes are compared by if nothing rarer is shared
+        private final String shape;
+        // Feature -> how many times the class has it
+        private final Map<String, Integer> features = new HashMap<>();
+        private int size;
+
+        /**
+         * @param typeNames gives the name that a class shows up as in the fingerprint
+         */
+        private Fingerprint(String className, byte[] bytecode, ClassHierarchy hierarchy, Function<String, String> typeNames) {
+            this.className = className;
+            this.hierarchy = hierarchy;
+            this.typeNames = typeNames;
+            ClassReader reader = new ClassReader(bytecode);
+            ClassHierarchy.ClassInfo info = hierarchy.getClass(className);
+            StringBuilder shape = new StringBuilder();
+            shape.append(reader.getAccess() & KIND_ACCESS).append(' ').append(generalizeType(reader.getSuperName()));
+            String[] interfaces = reader.getInterfaces();
+            String[] generalizedInterfaces = new String[interfaces.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                generalizedInterfaces[i] = generalizeType(interfaces[i]);
+            }
+            Arrays.sort(generalizedInterfaces);
+            for (String interfaceName : generalizedInterfaces) {
+                shape.append(' ').append(interfaceName);
+            }
+            int fieldCount = 0;
+            int methodCount = 0;
+            if (info != null) {
+                for (Map.Entry<String, Map<String, Integer>> entry : info.getFields().entrySet()) {
+                    for (Map.Entry<String, Integer> descEntry : entry.getValue().entrySet()) {
+                        addFeature("f:" + ((descEntry.getValue() & Opcodes.ACC_STATIC) != 0 ? "static " : "") + generalizeDesc(descEntry.getKey()));
+                        fieldCount++;
+                    }
+                }
+                for (Map.Entry<String, Map<String, Integer>> entry : info.getMethods().entrySet()) {
+                    for (Map.Entry<String, Integer> descEntry : entry.getValue().entrySet()) {
+                        String desc = generalizeDesc(descEntry.getKey());
+                        addFeature("m:" + ((descEntry.getValue() & Opcodes.ACC_STATIC) != 0 ? "static " : "") + desc);
+                        if (entry.getKey().length() > MAX_OBFUSCATED_NAME_LENGTH) {
+                            addFeature("n:" + entry.getKey() + desc);
+                        }
+                        methodCount++;
+                    }
+                }
+            }
+            shape.append(" #").append(fieldCount).append(" #").append(methodCount);
+            this.shape = shape.toString();
+            addFeature("shape:" + this.shape);
+            ConstantPoolReader.accept(bytecode, new ConstantPoolReader.ReferenceVisitor() {
+                @Override
+                public void visitConstant(Object value) {
+                    addFeature("k:" + value.getClass().getSimpleName() + " " + value);
+                }
+
+                @Override
+                public void visitField(String owner, String name, String desc) {
+                    if (!isInJar(owner)) {
+                        addFeature("x:" + owner + "." + name + " " + generalizeDesc(desc));
+                    }
+                }
+
+                @Override
+                public void visitMethod(String owner, String name, String desc) {
+                    if (!isInJar(owner)) {
+                        addFeature("x:" + owner + "." + name + generalizeDesc(desc));
+                    }
+                }
+            });
+        }
+
+        private void addFeature(String feature) {
+            features.merge(feature, 1, Integer::sum);
+            size++;
+        }
+
+        /**
+         * Gets the weighted Jaccard similarity of the features, from 0 to 1.
+         */
+        private double getSimilarity(Fingerprint other) {
+            int shared = 0;
+            for (Map.Entry<String, Integer> entry : features.entrySet()) {
+                Integer otherCount = other.features.get(entry.getKey());
+                if (otherCount != null) {
+                    shared += Math.min(entry.getValue(), otherCount);
+                }
+            }
+            // The union is the sum of the larger counts, which is both sizes minus what they share
+            return (double) shared / (size + other.size - shared);
+        }
+
+        private boolean isInJar(String className) {
+            return hierarchy.getClass(className) != null;
+        }
+
+        private String generalizeType(String className) {
+            return className == null ? "" : typeNames.apply(className);
+        }
+
+        /**
+         * Replaces the classes of the jar in the descriptor, since their obfuscated names change between versions.
+         */
+        private String generalizeDesc(String desc) {
+            StringBuilder builder = new StringBuilder(desc.length());
+            int i = 0;
+            while (i < desc.length()) {
+                char c = desc.charAt(i);
+                int end = c == 'L' ? desc.indexOf(';', i) : -1;
+                if (end == -1) {
+                    builder.append(c);
+                    i++;
+                    continue;
+                }
+                builder.append('L').append(generalizeType(desc.substring(i + 1, end))).append(';');
+                i = end + 1;
+            }
+            return builder.toString();
+        }
+    }
+
+    private static class Candidate {
+        private final String className;
+        private final String oldClassName;
+        private final double similarity;
+
+        private Candidate(String className, String oldClassName, double similarity) {
+            this.className = className;
+            this.oldClassName = oldClassName;
+            this.similarity = similarity;
+        }
+    }
+}
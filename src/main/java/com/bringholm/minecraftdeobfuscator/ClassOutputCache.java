@@ -0,0 +1,198 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.ClassData;
+import com.bringholm.minecraftdeobfuscator.jario.ClassHierarchy;
+import com.bringholm.minecraftdeobfuscator.remapper.MemberRemapper;
+import com.bringholm.minecraftdeobfuscator.util.ConstantPoolReader;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A directory of remapped classes, which lets a run skip remapping the classes whose output can't have changed
+ * since an earlier run. Each class is stored under a SHA-1 key of its original bytecode and of everything the
+ * remapping of it depends on: the mapped name of every class named in its constant pool, and the name that each
+ * member it declares or references is resolved to. These already take the mappings and the hierarchy into account,
+ * so a change to the mappings only invalidates the classes that actually use the changed names. Since the key
+ * doesn't depend on which jar the class came from, a class that didn't change between two Minecraft versions is
+ * only stored once.
+ * <p>
+ * The classes are stored as {@code <first two characters of the key>/<rest of the key>.class}.
+ */
+public class ClassOutputCache {
+    // Has to be increased whenever the remapping itself changes, so that the old output isn't used
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final Map<String, String> classMappings;
+    private final Remapper classRemapper;
+    private final MemberRemapper memberRemapper;
+    private final ClassHierarchy hierarchy;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public ClassOutputCache(File directory, Mappings mappings, Remapper classRemapper, MemberRemapper memberRemapper, ClassHierarchy hierarchy) throws IOException {
+        this.directory = directory;
+        this.classMappings = mappings.getClassMappings();
+        this.classRemapper = classRemapper;
+        this.memberRemapper = memberRemapper;
+        this.hierarchy = hierarchy;
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * Gets the key that the output of the class is stored under.
+     *
+     * @param remapMembers whether the members of the class are remapped, and not only the class names
+     */
+    public String getKey(ClassData data, boolean remapMembers) {
+        byte[] bytecode = data.getBytecode();
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        digest.update(ByteBuffer.allocate(9).putInt(VERSION).put((byte) (remapMembers ? 1 : 0)).putInt(bytecode.length).array());
+        digest.update(bytecode);
+        ConstantPoolReader.accept(bytecode, new ConstantPoolReader.ReferenceVisitor() {
+            @Override
+            public void visitString(String string) {
+                update(digest, mapSignature(string));
+            }
+
+            @Override
+            public void visitClass(String name) {
+                update(digest, classRemapper.mapType(name));
+                // Inner class names are taken from the mappings directly
+                update(digest, classMappings.containsKey(name) ? "+" : "-");
+            }
+
+            @Override
+            public void visitField(String owner, String name, String desc) {
+                if (remapMembers) {
+                    update(digest, memberRemapper.mapFieldName(owner, name, desc));
+                }
+            }
+
+            @Override
+            public void visitMethod(String owner, String name, String desc) {
+                if (remapMembers) {
+                    update(digest, memberRemapper.mapMethodName(owner, name, desc));
+                }
+            }
+
+            @Override
+            public void visitInvokeDynamic(String name, String desc) {
+                if (remapMembers) {
+                    update(digest, memberRemapper.mapInvokeDynamicMethodName(name, desc));
+                }
+            }
+        });
+        ClassHierarchy.ClassInfo info = hierarchy.getClass(data.getInternalName());
+        if (remapMembers && info != null) {
+            for (Map.Entry<String, Map<String, Integer>> entry : info.getMethods().entrySet()) {
+                for (String desc : entry.getValue().keySet()) {
+                    update(digest, memberRemapper.mapMethodName(info.getName(), entry.getKey(), desc));
+                    update(digest, memberRemapper.isMissingBridgeModifier(info.getName(), entry.getKey(), desc) ? "+" : "-");
+                }
+            }
+            for (Map.Entry<String, Map<String, Integer>> entry : info.getFields().entrySet()) {
+                for (String desc : entry.getValue().keySet()) {
+                    update(digest, memberRemapper.mapFieldName(info.getName(), entry.getKey(), desc));
+                }
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Maps the class names in a descriptor or signature. Every UTF-8 constant is run through this, since the
+     * constant pool doesn't say which ones are descriptors. The ones that aren't either fail to parse or map to
+     * themselves, which only means they don't add a dependency.
+     */
+    private String mapSignature(String string) {
+        if (!ConstantPoolReader.mayBeSignature(string)) {
+            return null;
+        }
+        try {
+            return classRemapper.mapSignature(string, false);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, String string) {
+        if (string != null) {
+            digest.update(string.getBytes(StandardCharsets.UTF_8));
+        }
+        // Keeps the boundaries between the strings from moving without changing the hash
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Gets the remapped bytecode stored under the key, or null if there is none.
+     */
+    public byte[] get(String key) {
+        File file = getFile(key);
+        if (file.isFile()) {
+            try {
+                byte[] bytecode = Files.readAllBytes(file.toPath());
+                if (bytecode.length >= 4 && ByteBuffer.wrap(bytecode).getInt() == 0xCAFEBABE) {
+                    hits.incrementAndGet();
+                    return bytecode;
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to read cached class " + file + ", it will be remapped again!");
+                e.printStackTrace();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, byte[] bytecode) {
+        File file = getFile(key);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            // Written to a temporary file first, so that a run reading the cache never sees half of a class
+            File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                Files.write(tempFile.toPath(), bytecode);
+                try {
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write cached class " + file + "!");
+            e.printStackTrace();
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key.substring(2) + ".class");
+    }
+
+    /**
+     * Gets how many classes were found in the cache.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets how many classes had to be remapped.
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,165 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+
+import java.io.File;
+import java.util.zip.Deflater;
+
+/**
+ * The settings of a {@link DeobfuscationSession}. These can't be changed once built, so a configuration can be
+ * shared by any amount of sessions, on any thread.
+ */
+public final class DeobfuscationConfig {
+    private final int threads;
+    private final boolean memoryMapped;
+    private final long classCacheSize;
+    private final boolean softClassCache;
+    private final int compressionLevel;
+    private final boolean debugPrint;
+    private final boolean mappingsCache;
+    private final File outputCacheDirectory;
+
+    private DeobfuscationConfig(Builder builder) {
+        this.threads = builder.threads;
+        this.memoryMapped = builder.memoryMapped;
+        this.classCacheSize = builder.classCacheSize;
+        this.softClassCache = builder.softClassCache;
+        this.compressionLevel = builder.compressionLevel;
+        this.debugPrint = builder.debugPrint;
+        this.mappingsCache = builder.mappingsCache;
+        this.outputCacheDirectory = builder.outputCacheDirectory;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the amount of threads to remap the classes on, where 1 remaps them on the calling thread.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Gets roughly how many bytes the parsed classes used to look up the hierarchy may take up.
+     */
+    public long getClassCacheSize() {
+        return classCacheSize;
+    }
+
+    public boolean isSoftClassCache() {
+        return softClassCache;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public boolean isDebugPrint() {
+        return debugPrint;
+    }
+
+    public boolean isMappingsCache() {
+        return mappingsCache;
+    }
+
+    /**
+     * Gets the directory of the {@link ClassOutputCache}, or null if the remapped classes aren't cached.
+     */
+    public File getOutputCacheDirectory() {
+        return outputCacheDirectory;
+    }
+
+    public static class Builder {
+        private int threads = 1;
+        private boolean memoryMapped;
+        private long classCacheSize = JarLoader.DEFAULT_CACHE_SIZE;
+        private boolean softClassCache;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private boolean debugPrint;
+        private boolean mappingsCache;
+        private File outputCacheDirectory;
+
+        private Builder() {
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Memory maps the jars instead of reading them through a JarFile. This doesn't apply to jars read from memory.
+         */
+        public Builder memoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+            return this;
+        }
+
+        public Builder classCacheSize(long classCacheSize) {
+            this.classCacheSize = classCacheSize;
+            return this;
+        }
+
+        /**
+         * Lets the garbage collector clear the cached classes when memory runs low.
+         */
+        public Builder softClassCache(boolean softClassCache) {
+            this.softClassCache = softClassCache;
+            return this;
+        }
+
+        /**
+         * Sets the compression level of the deobfuscated jars, from 0 (stored) to 9, or -1 for the default.
+         */
+        public Builder compressionLevel(int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Prints each remapped value to the console. This disables the output cache.
+         */
+        public Builder debugPrint(boolean debugPrint) {
+            this.debugPrint = debugPrint;
+            return this;
+        }
+
+        /**
+         * Compiles the mappings loaded from files into a {@link MappingsCache} next to the class mappings.
+         */
+        public Builder mappingsCache(boolean mappingsCache) {
+            this.mappingsCache = mappingsCache;
+            return this;
+        }
+
+        /**
+         * Sets the directory to keep the remapped classes in, or null to not keep them.
+         */
+        public Builder outputCacheDirectory(File outputCacheDirectory) {
+            this.outputCacheDirectory = outputCacheDirectory;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if one of the settings is invalid
+         */
+        public DeobfuscationConfig build() {
+            if (threads < 1) {
+                throw new IllegalArgumentException("The amount of threads must be at least 1");
+            }
+            if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("The compression level must be between 0 and 9");
+            }
+            if (classCacheSize < 0) {
+                throw new IllegalArgumentException("The class cache size can't be negative");
+            }
+            return new DeobfuscationConfig(this);
+        }
+    }
+}
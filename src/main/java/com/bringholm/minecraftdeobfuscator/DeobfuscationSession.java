@@ -0,0 +1,291 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.*;
+import com.bringholm.minecraftdeobfuscator.jfr.RemapEvents;
+import com.bringholm.minecraftdeobfuscator.remapper.*;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Deobfuscates jars with the settings of a {@link DeobfuscationConfig}. A session keeps no state between the jars
+ * other than its threads, so several sessions can run at the same time in one JVM, and one session can deobfuscate
+ * several jars at once as long as each of them has its own {@link JarLoader} and {@link JarWriter}. The jars and
+ * mappings can either be files or be given in memory.
+ * <p>
+ * The session has to be closed once done, which stops its threads unless they were given to it.
+ */
+public class DeobfuscationSession implements AutoCloseable {
+    // The classes that are remapped, everything else (like the bundled libraries) is copied without being parsed
+    static final Predicate<String> REMAPPED_CLASSES = className -> !className.contains("/") || className.startsWith("net/minecraft/server/");
+
+    private final DeobfuscationConfig config;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final JarProcessor processor;
+
+    /**
+     * Creates a session with threads of its own, if the configuration asks for more than one.
+     */
+    public DeobfuscationSession(DeobfuscationConfig config) {
+        this.config = config;
+        this.executor = config.getThreads() == 1 ? null : Executors.newFixedThreadPool(config.getThreads());
+        this.ownsExecutor = true;
+        this.processor = new JarProcessor(executor, config.getThreads());
+    }
+
+    /**
+     * Creates a session that runs on an executor shared with other sessions, which isn't shut down when the session
+     * is closed. The configured amount of threads is how many jobs the session keeps queued on the executor, so it
+     * should be the amount of threads of the executor. The session must not be used from the threads of the executor
+     * itself, since it waits for the jobs it queues.
+     *
+     * @param executor the executor, or null to run everything on the calling thread
+     */
+    public DeobfuscationSession(DeobfuscationConfig config, ExecutorService executor) {
+        this.config = config;
+        this.executor = executor;
+        this.ownsExecutor = false;
+        this.processor = new JarProcessor(executor, config.getThreads());
+    }
+
+    public DeobfuscationConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Loads the mappings from the text files, or from the mappings cache if it is enabled.
+     */
+    public Mappings loadMappings(File classMappingsFile, File memberMappingsFile) throws IOException {
+        if (config.isMappingsCache()) {
+            return MappingsCache.load(classMappingsFile, memberMappingsFile, executor);
+        }
+        try (FileInputStream classMappingsInputStream = new FileInputStream(classMappingsFile);
+             FileInputStream memberMappingsInputStream = new FileInputStream(memberMappingsFile)) {
+            return new Mappings(classMappingsInputStream, memberMappingsInputStream, executor);
+        }
+    }
+
+    /**
+     * Parses mappings that are in memory, which are never cached.
+     */
+    public Mappings loadMappings(byte[] classMappings, byte[] memberMappings) {
+        return new Mappings(new ByteArrayInputStream(classMappings), new ByteArrayInputStream(memberMappings), executor);
+    }
+
+    public JarLoader openJar(File file) throws IOException {
+        return new JarLoader(file, config.isMemoryMapped(), config.getClassCacheSize(), config.isSoftClassCache());
+    }
+
+    public JarLoader openJar(byte[] jar) throws IOException {
+        return new JarLoader(new ZipArchive(ByteBuffer.wrap(jar)), config.getClassCacheSize(), config.isSoftClassCache());
+    }
+
+    public JarWriter createOutputWriter(File file, Mappings mappings) throws IOException {
+        return new JarWriter(file, mappings, executor, config.getThreads(), config.getCompressionLevel());
+    }
+
+    public JarWriter createOutputWriter(OutputStream outputStream, Mappings mappings) {
+        return new JarWriter(outputStream, mappings, executor, config.getThreads(), config.getCompressionLevel());
+    }
+
+    /**
+     * Creates the cache of remapped classes, or returns null if there is no cache directory.
+     */
+    public ClassOutputCache createOutputCache(JarLoader loader, Mappings mappings, Remapper classRemapper, MemberRemapper memberRemapper) throws IOException {
+        if (config.getOutputCacheDirectory() == null || config.isDebugPrint()) {
+            return null;
+        }
+        return new ClassOutputCache(config.getOutputCacheDirectory(), mappings, classRemapper, memberRemapper, loader.getHierarchy());
+    }
+
+    /**
+     * Deobfuscates the jar file into the output file.
+     */
+    public void deobfuscate(Path jar, Path output, Mappings mappings) throws IOException {
+        try (JarLoader loader = openJar(jar.toFile()); JarWriter writer = createOutputWriter(output.toFile(), mappings)) {
+            remapJar(loader, writer, mappings);
+        }
+    }
+
+    /**
+     * Deobfuscates a jar that is in memory, and returns the deobfuscated jar.
+     */
+    public byte[] deobfuscate(byte[] jar, Mappings mappings) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(jar.length);
+        try (JarLoader loader = openJar(jar); JarWriter writer = createOutputWriter(output, mappings)) {
+            remapJar(loader, writer, mappings);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Remaps both the class names and the members in a single pass over the jar. The member remapping runs
+     * first on the obfuscated names, so the hierarchy can be looked up in the original jar, and the class
+     * remapping is then applied to its output before the class is written.
+     */
+    public void remapJar(JarLoader loader, JarWriter writer, Mappings mappings) throws IOException {
+        Remapper classRemapper = new AnonymousClassNameRemapper(mappings.getClassMappings());
+        MemberRemapper memberRemapper = new MemberRemapper(mappings.getMemberMappings(), loader, classRemapper);
+        remapJar(loader, writer, mappings, classRemapper, memberRemapper, createOutputCache(loader, mappings, classRemapper, memberRemapper), null, null);
+    }
+
+    /**
+     * @param outputCache the cache of remapped classes to use, or null to remap every class
+     * @param hasher      the hasher to hash the mapped classes with as they are remapped, or null to not hash them
+     * @param metrics     the metrics to count the remapped classes and their sizes in, or null to not count them
+     */
+    public void remapJar(JarLoader loader, JarWriter writer, Mappings mappings, Remapper classRemapper, MemberRemapper memberRemapper,
+                         ClassOutputCache outputCache, ClassHasher hasher, RunMetrics metrics) throws IOException {
+        loader.setClassFilter(REMAPPED_CLASSES);
+        JarProcessor.ClassTransformer transformer = createRemapTransformer(loader, mappings, classRemapper, memberRemapper, outputCache, hasher);
+        if (metrics != null) {
+            JarProcessor.ClassTransformer remapTransformer = transformer;
+            transformer = classData -> {
+                int bytesIn = classData.getBytecode().length;
+                remapTransformer.transform(classData);
+                metrics.recordRemappedClass(bytesIn, classData.getBytecode().length);
+            };
+        }
+        processor.process(loader, writer, transformer);
+    }
+
+    /**
+     * Updates the deobfuscated jar after the mappings have changed, by only remapping the affected classes again.
+     * The other classes, and the resources, are copied from the previous output as they are. The new jar is written
+     * next to the output and then moved over it, so the output is never left half written.
+     *
+     * @param previousMappings the mappings that the current output was deobfuscated with
+     */
+    public void patchJar(JarLoader loader, File outputFile, Set<String> affectedClasses, Mappings previousMappings, Mappings mappings,
+                         Remapper classRemapper, MemberRemapper memberRemapper, ClassOutputCache outputCache) throws IOException {
+        File tempFile = File.createTempFile(outputFile.getName(), ".tmp", outputFile.getAbsoluteFile().getParentFile());
+        try {
+            try (ZipArchive previousOutput = new ZipArchive(outputFile); JarWriter writer = createOutputWriter(tempFile, mappings)) {
+                loader.setClassFilter(REMAPPED_CLASSES);
+                processor.process(loader.getEntries(), entry -> {
+                    String name = entry.getName();
+                    if (name.endsWith(".class")) {
+                        String className = name.substring(0, name.length() - ".class".length());
+                        if (REMAPPED_CLASSES.test(className) && !affectedClasses.contains(className)) {
+                            // The name of a class is one of the things it depends on, so it is the same as before
+                            ZipArchive.Entry previousEntry = previousOutput.getEntry(previousMappings.getClassName(className) + ".class");
+                            if (previousEntry != null) {
+                                return new ResourceData(previousEntry, previousOutput.readRawData(previousEntry));
+                            }
+                        }
+                    }
+                    return loader.loadElement(entry);
+                }, writer, createRemapTransformer(loader, mappings, classRemapper, memberRemapper, outputCache, null));
+            }
+            try {
+                Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private JarProcessor.ClassTransformer createRemapTransformer(JarLoader loader, Mappings mappings, Remapper classRemapper,
+                                                                MemberRemapper memberRemapper, ClassOutputCache outputCache, ClassHasher hasher) {
+        boolean debugPrint = config.isDebugPrint();
+        return classData -> {
+            if (hasher != null) {
+                hasher.hash(classData);
+            }
+            Object event = RemapEvents.beginClassRemap();
+            int size = classData.getBytecode().length;
+            boolean remapMembers = mappings.getClassName(classData.getInternalName()).startsWith("net/minecraft/server/");
+            String key = null;
+            if (outputCache != null) {
+                key = outputCache.getKey(classData, remapMembers);
+                byte[] bytecode = outputCache.get(key);
+                if (bytecode != null) {
+                    classData.setBytecode(bytecode);
+                    RemapEvents.endClassRemap(event, classData.getInternalName(), size, bytecode.length);
+                    return;
+                }
+            }
+            ClassWriter classWriter = new ClassWriter(0);
+            ClassVisitor visitor = new InnerNameClassRemapper(classWriter, classRemapper, mappings);
+            if (remapMembers) {
+                visitor = debugPrint ? new MemberPrinterClassRemapper(visitor, memberRemapper, loader) : new MemberClassRemapper(visitor, memberRemapper, loader);
+            }
+            new ClassReader(classData.getBytecode()).accept(visitor, 0);
+            classData.setBytecode(classWriter.toByteArray());
+            if (outputCache != null) {
+                outputCache.put(key, classData.getBytecode());
+            }
+            RemapEvents.endClassRemap(event, classData.getInternalName(), size, classData.getBytecode().length);
+            if (debugPrint && mappings.getClassMappings().containsKey(classData.getInternalName())) {
+                System.out.println("Remapped " + classData.getInternalName() + " to " + mappings.getClassMappings()
+                        .get(classData.getInternalName()));
+            }
+        };
+    }
+
+    /**
+     * Remaps only the class names, the first of the two passes that were used before the single pass.
+     */
+    public void remapClasses(JarLoader loader, JarWriter writer, Mappings mappings) throws IOException {
+        Remapper remapper = new AnonymousClassNameRemapper(mappings.getClassMappings());
+        boolean debugPrint = config.isDebugPrint();
+        loader.setClassFilter(REMAPPED_CLASSES);
+        processor.process(loader, writer, classData -> {
+            classData.setBytecode(remapClassNames(classData.getBytecode(), remapper, mappings));
+            if (debugPrint && mappings.getClassMappings().containsKey(classData.getInternalName())) {
+                System.out.println("Remapped " + classData.getInternalName() + " to " + mappings.getClassMappings()
+                        .get(classData.getInternalName()));
+            }
+        });
+    }
+
+    /**
+     * Remaps the members of a class remapped jar, the second of the two passes that were used before the single pass.
+     */
+    public void remapMembers(JarLoader loader, JarWriter writer, Mappings mappings) throws IOException {
+        MemberRemapper remapper = new MemberRemapper(mappings.getMemberMappings(), loader);
+        boolean debugPrint = config.isDebugPrint();
+        loader.setClassFilter(className -> className.startsWith("net/minecraft/server/"));
+        processor.process(loader, writer, classData -> {
+            Object event = RemapEvents.beginClassRemap();
+            int size = classData.getBytecode().length;
+            ClassWriter classWriter = new ClassWriter(0);
+            ClassRemapper classRemapper = debugPrint ? new MemberPrinterClassRemapper(classWriter, remapper, loader) : new MemberClassRemapper(classWriter, remapper, loader);
+            new ClassReader(classData.getBytecode()).accept(classRemapper, 0);
+            classData.setBytecode(classWriter.toByteArray());
+            RemapEvents.endClassRemap(event, classData.getInternalName(), size, classData.getBytecode().length);
+        });
+    }
+
+    /**
+     * Remaps only the class names of a class, the way the class remapped jar is created.
+     */
+    public static byte[] remapClassNames(byte[] bytecode, Remapper remapper, Mappings mappings) {
+        ClassWriter classWriter = new ClassWriter(0);
+        new ClassReader(bytecode).accept(new InnerNameClassRemapper(classWriter, remapper, mappings), 0);
+        return classWriter.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor && executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
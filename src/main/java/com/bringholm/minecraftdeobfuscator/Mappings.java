@@ -2,121 +2,308 @@ package com.bringholm.minecraftdeobfuscator;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
-import org.objectweb.asm.Type;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 public class Mappings {
+    private static final String NMS_PACKAGE = "net/minecraft/server/";
+
     private Map<String, String> classMappings = new HashMap<>();
+    // Deobfuscated name -> obfuscated name
+    private Map<String, String> reverseClassMappings = new HashMap<>();
     private Map<String, String> memberMappings = new HashMap<>();
+    // Obfuscated name -> hash, for the classes whose mapping has a hash column
     private BiMap<String, String> hashes = HashBiMap.create();
+    // Obfuscated name -> structural hash, for the classes whose mapping has a structural hash column
+    private BiMap<String, String> structuralHashes = HashBiMap.create();
+    private long classLoadTime;
+    private long memberLoadTime;
+    private long loadTime;
+    private boolean cached;
 
     Mappings(InputStream classMappingsInputStream, InputStream memberMappingsInputStream) {
-        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(classMappingsInputStream))) {
-            String line = reader.readLine();
-            while (line != null) {
+        this(classMappingsInputStream, memberMappingsInputStream, null);
+    }
+
+    /**
+     * @param executor the executor to read the member mappings on while the class mappings are read, or null to read
+     *                 them one after the other
+     */
+    Mappings(InputStream classMappingsInputStream, InputStream memberMappingsInputStream, ExecutorService executor) {
+        long startTime = System.currentTimeMillis();
+        Future<List<String[]>> memberLines = null;
+        if (executor != null) {
+            memberLines = executor.submit(() -> readMemberMappings(memberMappingsInputStream));
+        }
+        readClassMappings(classMappingsInputStream);
+        try {
+            // The descriptors of the member mappings can only be fixed once all of the classes are known
+            addMemberMappings(memberLines == null ? readMemberMappings(memberMappingsInputStream) : memberLines.get());
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        loadTime = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Creates mappings that have already been parsed, like the ones read from a {@link MappingsCache}.
+     */
+    Mappings(Map<String, String> classMappings, Map<String, String> memberMappings, Map<String, String> hashes,
+             Map<String, String> structuralHashes, long loadTime) {
+        this.classMappings = classMappings;
+        this.memberMappings = memberMappings;
+        this.hashes.putAll(hashes);
+        this.structuralHashes.putAll(structuralHashes);
+        this.loadTime = loadTime;
+        this.cached = true;
+        for (Map.Entry<String, String> entry : classMappings.entrySet()) {
+            reverseClassMappings.put(entry.getValue(), entry.getKey());
+        }
+    }
+
+    /**
+     * Creates class mappings without any member mappings, like the ones generated by a {@link ClassMatcher}.
+     */
+    Mappings(Map<String, String> classMappings) {
+        this.classMappings = classMappings;
+        for (Map.Entry<String, String> entry : classMappings.entrySet()) {
+            reverseClassMappings.put(entry.getValue(), entry.getKey());
+        }
+    }
+
+    private void readClassMappings(InputStream inputStream) {
+        long startTime = System.currentTimeMillis();
+        String[] tokens = new String[4];
+        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
                 if (line.startsWith("#") || line.isEmpty()) {
-                    line = reader.readLine();
                     continue;
                 }
-                String[] split = line.split(" ");
-                if (MinecraftDeobfuscator.options.has("check-hashes")) {
-                    if (split.length == 3) {
-                        String newName = split[1];
-                        if (!newName.startsWith("net/minecraft/server/")) {
-                            newName = "net/minecraft/server/" + newName;
-                        }
-                        classMappings.put(split[0], newName);
-                        hashes.put(split[0], split[2]);
-                    } else {
-                        System.out.println("Malformed class mapping at ln " + reader.getLineNumber() + "!");
+                int tokenCount = tokenize(line, tokens);
+                // The hashes are optional, they are only there if the mappings were generated with their hashes
+                if (tokenCount >= 2 && tokenCount <= 4) {
+                    String newName = tokens[1];
+                    if (!newName.startsWith(NMS_PACKAGE)) {
+                        newName = NMS_PACKAGE + newName;
                     }
-                } else {
-                    if (split.length == 2) {
-                        String newName = split[1];
-                        if (!newName.startsWith("net/minecraft/server/")) {
-                            newName = "net/minecraft/server/" + newName;
-                        }
-                        classMappings.put(split[0], newName);
-                    } else {
-                        System.out.println("Malformed class mapping at ln " + reader.getLineNumber() + "!");
+                    classMappings.put(tokens[0], newName);
+                    reverseClassMappings.put(newName, tokens[0]);
+                    if (tokenCount >= 3) {
+                        hashes.forcePut(tokens[0], tokens[2]);
+                    }
+                    if (tokenCount == 4) {
+                        structuralHashes.forcePut(tokens[0], tokens[3]);
                     }
+                } else {
+                    System.out.println("Malformed class mapping at ln " + reader.getLineNumber() + "!");
                 }
-                line = reader.readLine();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(memberMappingsInputStream))) {
-            String line = reader.readLine();
-            while (line != null) {
+        classLoadTime = System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Splits the member mappings into their tokens, with the line number appended as the last one. Lines with the
+     * wrong amount of tokens are reported and skipped.
+     */
+    private List<String[]> readMemberMappings(InputStream inputStream) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<String[]> lines = new ArrayList<>();
+        String[] tokens = new String[5];
+        try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
                 if (line.startsWith("#") || line.isEmpty()) {
-                    line = reader.readLine();
                     continue;
                 }
-                String[] split = line.split(" ");
-                String className = split[0];
-                if (!className.startsWith("net/minecraft/server/")) {
-                    className = "net/minecraft/server/" + className;
-                }
-                if (split.length == 3) {
-                    // Field mapping
-                    memberMappings.put(className + "." + split[1], split[2]);
-                } else if (split.length == 4) {
-                    // Method mapping
-                    memberMappings.put(className + "." + split[1] + addPackageToMethodDesc(split[2], reader.getLineNumber()), split[3]);
+                int tokenCount = tokenize(line, tokens);
+                if (tokenCount == 3 || tokenCount == 4) {
+                    String[] memberLine = Arrays.copyOf(tokens, tokenCount + 1);
+                    memberLine[tokenCount] = String.valueOf(reader.getLineNumber());
+                    lines.add(memberLine);
                 } else {
                     System.out.println("Malformed member mapping at ln " + reader.getLineNumber() + "!");
                 }
-                line = reader.readLine();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        memberLoadTime = System.currentTimeMillis() - startTime;
+        return lines;
     }
 
-    public String getHash(String className) {
-        if (!MinecraftDeobfuscator.options.has("check-hashes")) {
-            throw new IllegalStateException("Check hashes is not enabled");
+    private void addMemberMappings(List<String[]> lines) {
+        long startTime = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder();
+        for (String[] line : lines) {
+            String className = line[0];
+            if (!className.startsWith(NMS_PACKAGE)) {
+                className = NMS_PACKAGE + className;
+            }
+            if (line.length == 4) {
+                // Field mapping
+                memberMappings.put(className + "." + line[1], line[2]);
+            } else {
+                // Method mapping
+                builder.setLength(0);
+                builder.append(className).append('.').append(line[1]);
+                if (addPackageToMethodDesc(line[2], builder)) {
+                    memberMappings.put(builder.toString(), line[3]);
+                } else {
+                    System.out.println("Malformed member mapping at ln " + line[4] + "!");
+                }
+            }
+        }
+        memberLoadTime += System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Splits the line on spaces into the tokens array, and returns the amount of tokens, or one more than the length
+     * of the array if there were too many. Like {@link String#split(String)}, trailing empty tokens are dropped.
+     */
+    static int tokenize(String line, String[] tokens) {
+        int count = 0;
+        int start = 0;
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        while (start <= end) {
+            int space = line.indexOf(' ', start);
+            if (space == -1 || space > end) {
+                space = end;
+            }
+            if (count == tokens.length) {
+                return count + 1;
+            }
+            tokens[count++] = line.substring(start, space);
+            start = space + 1;
         }
+        return count;
+    }
+
+    /**
+     * Gets the hash of the class with the obfuscated name, or null if its mapping doesn't have a hash.
+     */
+    public String getHash(String className) {
         return this.hashes.get(className);
     }
 
+    /**
+     * Gets the obfuscated name of the class with the hash, or null if no mapping has that hash.
+     */
+    public String getClassWithHash(String hash) {
+        return this.hashes.inverse().get(hash);
+    }
+
+    /**
+     * Gets the obfuscated name of the class with the structural hash, or null if no mapping has that structural hash.
+     */
+    public String getClassWithStructuralHash(String structuralHash) {
+        return this.structuralHashes.inverse().get(structuralHash);
+    }
+
     /*
      * The mappings provided don't include net/minecraft/server before the class name in most cases,
-     * so we have to add it.
+     * so we have to add it. This goes through the descriptor by hand, so that the class names inside of
+     * array types are found as well. Returns false if the descriptor is malformed.
      */
-    private String addPackageToMethodDesc(String desc, int line) {
-        StringBuilder builder = new StringBuilder("(");
-        Type[] parameters = Type.getArgumentTypes(desc);
-        for (Type type : parameters) {
-            if (type.getSort() == Type.OBJECT && type.getInternalName().indexOf('/') == -1 &&
-                    classMappings.containsValue("net/minecraft/server/" + type.getInternalName())) {
-                builder.append(type.getDescriptor().replace(type.getInternalName(), "net/minecraft/server/" +
-                        type.getInternalName()));
-            } else {
-                builder.append(type.getDescriptor());
-            }
+    private boolean addPackageToMethodDesc(String desc, StringBuilder builder) {
+        int length = desc.length();
+        if (length < 3 || desc.charAt(0) != '(') {
+            return false;
         }
-        Type returnType;
-        try {
-            returnType = Type.getReturnType(desc);
-        } catch (Exception e) {
-            System.out.println("Malformed member mapping at ln " + line + "!");
-            return null;
-        }
-        builder.append(')');
-        if (returnType.getSort() == Type.OBJECT && returnType.getInternalName().indexOf('/') == -1 &&
-                classMappings.containsValue("net/minecraft/server/" + returnType.getInternalName())) {
-            builder.append(returnType.getDescriptor().replace(returnType.getInternalName(), "net/minecraft/server/" +
-                returnType.getInternalName()));
-        } else {
-            builder.append(returnType.getDescriptor());
+        boolean returnType = false;
+        int i = 0;
+        while (i < length) {
+            char c = desc.charAt(i);
+            if (c == 'L') {
+                int end = desc.indexOf(';', i);
+                if (end == -1) {
+                    return false;
+                }
+                builder.append('L');
+                String className = desc.substring(i + 1, end);
+                if (className.indexOf('/') == -1 && reverseClassMappings.containsKey(NMS_PACKAGE + className)) {
+                    builder.append(NMS_PACKAGE);
+                }
+                builder.append(className).append(';');
+                i = end + 1;
+                continue;
+            }
+            if (c == ')') {
+                if (returnType) {
+                    return false;
+                }
+                returnType = true;
+            } else if (c != '(' || i != 0) {
+                if ("ZCBSIFJD[".indexOf(c) == -1 && !(c == 'V' && returnType)) {
+                    return false;
+                }
+            }
+            builder.append(c);
+            i++;
         }
-        return builder.toString();
+        return returnType && desc.charAt(length - 1) != ')';
+    }
+
+    /**
+     * Gets the obfuscated name of a class from its deobfuscated name, or null if there is no mapping to it.
+     */
+    public String getObfuscatedClassName(String newClassName) {
+        return reverseClassMappings.get(newClassName);
+    }
+
+    /**
+     * Gets how long loading the class mappings took, in milliseconds.
+     */
+    public long getClassLoadTime() {
+        return classLoadTime;
+    }
+
+    /**
+     * Gets how long reading the member mappings and fixing their descriptors took, in milliseconds. When the mappings
+     * were read in parallel, this overlaps with the class load time.
+     */
+    public long getMemberLoadTime() {
+        return memberLoadTime;
+    }
+
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Gets whether these mappings were read from a {@link MappingsCache} rather than parsed from the text files.
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public boolean hasHashes() {
+        return !hashes.isEmpty();
+    }
+
+    Map<String, String> getHashes() {
+        return hashes;
+    }
+
+    Map<String, String> getStructuralHashes() {
+        return structuralHashes;
     }
 
     public Map<String, String> getMemberMappings() {
@@ -0,0 +1,185 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A compiled form of the mappings, which is written next to the class mappings the first time they are loaded
+ * and memory mapped on later runs. It contains the mappings as they are after parsing, with the package already
+ * added to the descriptors, so loading it only has to decode a string pool and fill the maps.
+ * <p>
+ * The cache stores a SHA-1 hash of the text files it was compiled from, and is compiled again whenever it doesn't
+ * match the files anymore.
+ * <p>
+ * Format (big endian): magic, version, the 20 byte hash, the string pool (count, then a length and the UTF-8 bytes
+ * of each string) and then the class mappings, hashes, structural hashes and member mappings, each as a count
+ * followed by pairs of indexes into the string pool.
+ */
+public class MappingsCache {
+    private static final int MAGIC = 0x4D444D43;
+    private static final int VERSION = 3;
+    private static final int HASH_LENGTH = 20;
+
+    private MappingsCache() {
+    }
+
+    /**
+     * Gets the cache file used for the class mappings file.
+     */
+    public static File getCacheFile(File classMappingsFile) {
+        String name = classMappingsFile.getName();
+        if (name.lastIndexOf('.') > 0) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        return new File(classMappingsFile.getAbsoluteFile().getParentFile(), name + ".cache");
+    }
+
+    /**
+     * Loads the mappings from the cache, or parses the text files and writes a new cache if there is no up to date one.
+     *
+     * @see Mappings#Mappings(InputStream, InputStream, ExecutorService)
+     */
+    public static Mappings load(File classMappingsFile, File memberMappingsFile, ExecutorService executor) throws IOException {
+        long startTime = System.currentTimeMillis();
+        byte[] classMappingsBytes = Files.readAllBytes(classMappingsFile.toPath());
+        byte[] memberMappingsBytes = Files.readAllBytes(memberMappingsFile.toPath());
+        byte[] hash = hash(classMappingsBytes, memberMappingsBytes);
+        File cacheFile = getCacheFile(classMappingsFile);
+        if (cacheFile.isFile()) {
+            try {
+                Mappings mappings = read(cacheFile, hash, startTime);
+                if (mappings != null) {
+                    return mappings;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to read mappings cache " + cacheFile + ", it will be rebuilt!");
+                e.printStackTrace();
+            }
+        }
+        Mappings mappings = new Mappings(new ByteArrayInputStream(classMappingsBytes), new ByteArrayInputStream(memberMappingsBytes), executor);
+        try {
+            write(cacheFile, hash, mappings);
+        } catch (IOException e) {
+            System.err.println("Failed to write mappings cache " + cacheFile + "!");
+            e.printStackTrace();
+        }
+        return mappings;
+    }
+
+    private static byte[] hash(byte[] classMappingsBytes, byte[] memberMappingsBytes) {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        // The lengths keep the boundary between the two files from moving without changing the hash
+        digest.update(ByteBuffer.allocate(12).putInt(VERSION).putInt(classMappingsBytes.length).putInt(memberMappingsBytes.length).array());
+        digest.update(classMappingsBytes);
+        digest.update(memberMappingsBytes);
+        return digest.digest();
+    }
+
+    /**
+     * Reads the cache, or returns null if it was compiled from other mappings.
+     */
+    private static Mappings read(File cacheFile, byte[] expectedHash, long startTime) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+            if (!Arrays.equals(hash, expectedHash)) {
+                return null;
+            }
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            Map<String, String> classMappings = readTable(buffer, strings);
+            Map<String, String> hashes = readTable(buffer, strings);
+            Map<String, String> structuralHashes = readTable(buffer, strings);
+            Map<String, String> memberMappings = readTable(buffer, strings);
+            if (buffer.hasRemaining()) {
+                throw new IOException("Trailing data in mappings cache");
+            }
+            return new Mappings(classMappings, memberMappings, hashes, structuralHashes, System.currentTimeMillis() - startTime);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated mappings cache", e);
+        }
+    }
+
+    private static Map<String, String> readTable(ByteBuffer buffer, String[] strings) {
+        int size = buffer.getInt();
+        Map<String, String> table = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            table.put(strings[buffer.getInt()], strings[buffer.getInt()]);
+        }
+        return table;
+    }
+
+    private static void write(File cacheFile, byte[] hash, Mappings mappings) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        ByteArrayOutputStream tables = new ByteArrayOutputStream();
+        DataOutputStream tablesOutput = new DataOutputStream(tables);
+        writeTable(tablesOutput, mappings.getClassMappings(), indexes);
+        writeTable(tablesOutput, mappings.getHashes(), indexes);
+        writeTable(tablesOutput, mappings.getStructuralHashes(), indexes);
+        writeTable(tablesOutput, mappings.getMemberMappings(), indexes);
+        String[] strings = new String[indexes.size()];
+        for (Map.Entry<String, Integer> entry : indexes.entrySet()) {
+            strings[entry.getValue()] = entry.getKey();
+        }
+        // Written to a temporary file first, so that a run reading the cache never sees half of it
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.write(hash);
+                output.writeInt(strings.length);
+                for (String string : strings) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                }
+                tables.writeTo(output);
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    private static void writeTable(DataOutputStream output, Map<String, String> table, Map<String, Integer> indexes) throws IOException {
+        output.writeInt(table.size());
+        for (Map.Entry<String, String> entry : table.entrySet()) {
+            output.writeInt(indexes.computeIfAbsent(entry.getKey(), key -> indexes.size()));
+            output.writeInt(indexes.computeIfAbsent(entry.getValue(), key -> indexes.size()));
+        }
+    }
+}
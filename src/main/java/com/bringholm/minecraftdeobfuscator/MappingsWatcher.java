@@ -0,0 +1,126 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.remapper.AnonymousClassNameRemapper;
+import com.bringholm.minecraftdeobfuscator.remapper.MemberRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the mappings files once the jar has been deobfuscated, and updates the deobfuscated jar whenever they
+ * change. The jar, its hierarchy and the references of its classes stay loaded between the changes, and only the
+ * classes that the {@link ReferenceIndex} finds to be affected by a change are remapped again.
+ */
+public class MappingsWatcher {
+    // Editors often save a file in several steps, so the changes are only read once the file has been quiet this long
+    private static final long SETTLE_TIME = 200;
+
+    private final DeobfuscationSession session;
+    private final JarLoader loader;
+    private final ReferenceIndex index;
+    private final File classMappingsFile;
+    private final File memberMappingsFile;
+    private final File outputFile;
+    private Mappings mappings;
+    private Remapper classRemapper;
+    private MemberRemapper memberRemapper;
+
+    /**
+     * @param outputFile the deobfuscated jar to update
+     * @param mappings the mappings that the current output was deobfuscated with, along with their remappers
+     */
+    public MappingsWatcher(DeobfuscationSession session, JarLoader loader, ReferenceIndex index, File classMappingsFile, File memberMappingsFile,
+                           File outputFile, Mappings mappings, Remapper classRemapper, MemberRemapper memberRemapper) {
+        this.session = session;
+        this.loader = loader;
+        this.index = index;
+        this.classMappingsFile = classMappingsFile.getAbsoluteFile();
+        this.memberMappingsFile = memberMappingsFile.getAbsoluteFile();
+        this.outputFile = outputFile;
+        this.mappings = mappings;
+        this.classRemapper = classRemapper;
+        this.memberRemapper = memberRemapper;
+    }
+
+    /**
+     * Watches the mappings until the thread is interrupted.
+     */
+    public void watch() throws IOException {
+        System.out.println("Indexed the references of " + index.size() + " classes in " + index.getBuildTime() + "ms");
+        Path classMappingsPath = classMappingsFile.toPath();
+        Path memberMappingsPath = memberMappingsFile.toPath();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Set<Path> directories = new HashSet<>();
+            directories.add(classMappingsPath.getParent());
+            directories.add(memberMappingsPath.getParent());
+            for (Path directory : directories) {
+                // Some editors save by writing a new file and moving it over the old one
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            System.out.println("Watching " + classMappingsFile.getName() + " and " + memberMappingsFile.getName() + " for changes...");
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changed = true;
+                            continue;
+                        }
+                        Path path = ((Path) key.watchable()).resolve((Path) event.context());
+                        changed |= path.equals(classMappingsPath) || path.equals(memberMappingsPath);
+                    }
+                    key.reset();
+                    key = changed ? watchService.poll(SETTLE_TIME, TimeUnit.MILLISECONDS) : null;
+                }
+                if (changed) {
+                    update();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // Closed while shutting down
+        }
+    }
+
+    private void update() {
+        long startTime = System.currentTimeMillis();
+        Mappings newMappings;
+        try {
+            newMappings = session.loadMappings(classMappingsFile, memberMappingsFile);
+        } catch (IOException e) {
+            System.err.println("Failed to load the changed mappings!");
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Remapper newClassRemapper = new AnonymousClassNameRemapper(newMappings.getClassMappings());
+            MemberRemapper newMemberRemapper = new MemberRemapper(newMappings.getMemberMappings(), loader, newClassRemapper);
+            MinecraftDeobfuscator.printLookupTable(newMemberRemapper);
+            Set<String> affectedClasses = index.getAffectedClasses(mappings, classRemapper, memberRemapper, newMappings, newClassRemapper, newMemberRemapper);
+            if (affectedClasses.isEmpty()) {
+                System.out.println("The mappings changed, but none of the classes are affected");
+            } else {
+                System.out.println("Remapping " + affectedClasses.size() + " affected classes...");
+                ClassOutputCache outputCache = session.createOutputCache(loader, newMappings, newClassRemapper, newMemberRemapper);
+                session.patchJar(loader, outputFile, affectedClasses, mappings, newMappings, newClassRemapper, newMemberRemapper, outputCache);
+                MinecraftDeobfuscator.printOutputCacheStats(outputCache);
+                System.out.println("Updated the deobfuscated jar in " + (System.currentTimeMillis() - startTime) + "ms!");
+            }
+            mappings = newMappings;
+            classRemapper = newClassRemapper;
+            memberRemapper = newMemberRemapper;
+        } catch (IOException e) {
+            // The output still matches the old mappings, so the next change is compared to those
+            System.err.println("Failed to update the deobfuscated jar!");
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,37 +1,41 @@
 package com.bringholm.minecraftdeobfuscator;
 
-import com.bringholm.minecraftdeobfuscator.jario.*;
-import com.bringholm.minecraftdeobfuscator.remapper.*;
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jario.JarWriter;
+import com.bringholm.minecraftdeobfuscator.jfr.RemapEvents;
+import com.bringholm.minecraftdeobfuscator.remapper.AnonymousClassNameRemapper;
+import com.bringholm.minecraftdeobfuscator.remapper.MemberRemapper;
+import com.google.common.cache.CacheStats;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
-import org.apache.commons.codec.digest.DigestUtils;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.commons.ClassRemapper;
 import org.objectweb.asm.commons.Remapper;
 
-import java.io.*;
-import java.nio.file.Files;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.jar.JarFile;
+import java.util.zip.Deflater;
 
+/**
+ * The command line interface, which turns the options into a {@link DeobfuscationConfig} and runs a
+ * {@link DeobfuscationSession} with it.
+ */
 public class MinecraftDeobfuscator {
-    public static OptionSet options;
+    private final OptionSet options;
+    private final DeobfuscationSession session;
+    // Null unless the metrics should be written
+    private final RunMetrics metrics;
+
+    private MinecraftDeobfuscator(OptionSet options, DeobfuscationSession session) {
+        this.options = options;
+        this.session = session;
+        this.metrics = options.has("metrics-out") ? new RunMetrics() : null;
+    }
 
     public static void main(String[] args) {
-        OptionParser parser = new OptionParser() {
-            {
-                acceptsAll(Arrays.asList("?", "help"), "Displays help");
-                acceptsAll(Arrays.asList("mj", "mjar", "minecraft-jar"), "The minecraft jar to deobfuscate").withRequiredArg().ofType(File.class).required();
-                acceptsAll(Arrays.asList("rf", "rfile", "remapped-file"), "The output file for the deobfuscated jar").withRequiredArg().ofType(File.class).required();
-                acceptsAll(Arrays.asList("clm", "clmappings", "class-mappings"), "The class mappings").withRequiredArg().ofType(File.class).required();
-                acceptsAll(Arrays.asList("mem", "memappings", "member-mappings"), "The member mappings").withRequiredArg().ofType(File.class).required();
-                acceptsAll(Arrays.asList("dp", "dprint", "debug-print"), "Prints each remapped value to console");
-                acceptsAll(Arrays.asList("ghm", "ghmappings", "generate-hash-mappings"), "Generates class mappings with MD-5 hashes corresponding to each of the classes");
-                acceptsAll(Arrays.asList("gfh", "gfromhashes", "generate-mappings-from-hashes"), "Attempts to generate new mappings using hashes to account for refactoring. Needs mappings to contain hashes");
-            }
-        };
+        OptionParser parser = createOptionParser();
+        OptionSet options;
         try {
             options = parser.parse(args);
         } catch (OptionException e) {
@@ -51,129 +55,310 @@ public class MinecraftDeobfuscator {
             }
             return;
         }
-        Mappings mappings;
-        try (FileInputStream classMappingsInputStream = new FileInputStream((File) options.valueOf("class-mappings"));
-             FileInputStream memberMappingsInputStream = new FileInputStream((File) options.valueOf("member-mappings"))) {
-            mappings = new Mappings(classMappingsInputStream, memberMappingsInputStream);
-        } catch (IOException e) {
-            e.printStackTrace();
+        DeobfuscationConfig config = createConfig(options);
+        if (config == null) {
             return;
         }
-        long startTime = System.currentTimeMillis();
-        String classRemappedJar = options.valueOf("minecraft-jar").toString();
-        classRemappedJar = classRemappedJar.substring(0, classRemappedJar.lastIndexOf('.')) + "_class_remapped.jar";
-        try (JarWriter writer = new JarWriter(new File(classRemappedJar), mappings); JarLoader loader = new JarLoader(new JarFile((File) options.valueOf("minecraft-jar")))) {
-            System.out.println("Deobfuscating classes...");
-            remapClasses(loader, writer, mappings);
+        if (options.has("jfr-events") && !RemapEvents.enable()) {
+            System.err.println("Java Flight Recorder events need a JVM with Flight Recorder and a build made with the jfr profile!");
+            return;
+        }
+        boolean succeeded;
+        try (DeobfuscationSession session = new DeobfuscationSession(config)) {
+            succeeded = new MinecraftDeobfuscator(options, session).deobfuscate();
+        }
+        if (!succeeded) {
+            System.exit(1);
+        }
+    }
+
+    static OptionParser createOptionParser() {
+        return new OptionParser() {
+            {
+                acceptsAll(Arrays.asList("?", "help"), "Displays help");
+                // Declared first, since the minecraft jar and output file are only required without them
+                acceptsAll(Arrays.asList("b", "batch"), "A manifest of jars to deobfuscate with the same mappings instead of the minecraft jar, with the path of a jar and of its output on each line").withRequiredArg().ofType(File.class);
+                acceptsAll(Arrays.asList("d", "daemon"), "Keeps the mappings loaded and deobfuscates the jars sent to this local port, with the path of a jar and of its output on each line. The first line of every connection has to be the token in the daemon token file. Send shutdown to stop it").withRequiredArg().ofType(Integer.class);
+                acceptsAll(Arrays.asList("dtf", "dtfile", "daemon-token-file"), "The file the daemon writes the token that clients have to send to, readable only by the current user").withRequiredArg().ofType(File.class).defaultsTo(new File("daemon.token"));
+                acceptsAll(Arrays.asList("mj", "mjar", "minecraft-jar"), "The minecraft jar to deobfuscate").requiredUnless("batch", "daemon").withRequiredArg().ofType(File.class);
+                acceptsAll(Arrays.asList("rf", "rfile", "remapped-file"), "The output file for the deobfuscated jar").requiredUnless("batch", "daemon").withRequiredArg().ofType(File.class);
+                acceptsAll(Arrays.asList("clm", "clmappings", "class-mappings"), "The class mappings").withRequiredArg().ofType(File.class).required();
+                acceptsAll(Arrays.asList("mem", "memappings", "member-mappings"), "The member mappings").withRequiredArg().ofType(File.class).required();
+                acceptsAll(Arrays.asList("dp", "dprint", "debug-print"), "Prints each remapped value to console");
+                acceptsAll(Arrays.asList("ghm", "ghmappings", "generate-hash-mappings"), "Generates class mappings with the MD-5 and structural hashes of each of the classes, taken while the jar is deobfuscated");
+                acceptsAll(Arrays.asList("gfh", "gfromhashes", "generate-mappings-from-hashes"), "Generates class mappings for a new version of the minecraft jar from the mappings of an old version, matching the classes by their hashes and, given the old jar, by their structure");
+                acceptsAll(Arrays.asList("omj", "omjar", "old-minecraft-jar"), "The minecraft jar that the mappings are for, used to match the classes that changed when generating mappings from hashes").withRequiredArg().ofType(File.class);
+                acceptsAll(Arrays.asList("t", "threads"), "The amount of threads to remap classes on").withRequiredArg().ofType(Integer.class).defaultsTo(1);
+                acceptsAll(Arrays.asList("mm", "mmap", "memory-map"), "Memory maps the minecraft jar instead of reading it through a JarFile");
+                acceptsAll(Arrays.asList("ccs", "ccsize", "class-cache-size"), "Roughly how many megabytes the parsed classes used to look up the hierarchy may take up").withRequiredArg().ofType(Integer.class).defaultsTo((int) (JarLoader.DEFAULT_CACHE_SIZE / (1024 * 1024)));
+                acceptsAll(Arrays.asList("scc", "sccache", "soft-class-cache"), "Lets the garbage collector clear the cached classes when memory runs low");
+                acceptsAll(Arrays.asList("mc", "mcache", "mappings-cache"), "Compiles the mappings into a binary cache next to the class mappings, which is used instead of parsing them as long as they don't change");
+                acceptsAll(Arrays.asList("cd", "cdir", "cache-dir"), "A directory to keep the remapped classes in, so that the classes which aren't affected by a change to the mappings can be reused on the next run. Not used together with debug-print").withRequiredArg().ofType(File.class);
+                acceptsAll(Arrays.asList("w", "watch", "watch-mappings"), "Keeps running after deobfuscating the jar, and updates it whenever the mappings change. Only the classes affected by the change are remapped again");
+                acceptsAll(Arrays.asList("cl", "clevel", "compression-level"), "The compression level of the deobfuscated jar, from 0 (stored) to 9").withRequiredArg().ofType(Integer.class).defaultsTo(Deflater.DEFAULT_COMPRESSION);
+                acceptsAll(Arrays.asList("je", "jevents", "jfr-events"), "Emits Java Flight Recorder events for every class that is loaded, remapped and analyzed, and for the members resolved through the hierarchy. They are recorded when running with -XX:StartFlightRecording");
+                acceptsAll(Arrays.asList("mo", "mout", "metrics-out"), "Writes the time taken and the amount of data processed by each phase, and the hit rates of the caches, to this file as JSON").withRequiredArg().ofType(File.class);
+            }
+        };
+    }
+
+    /**
+     * Validates the options and creates the configuration from them. Returns null if the options are invalid.
+     */
+    static DeobfuscationConfig createConfig(OptionSet options) {
+        if ((options.has("batch") || options.has("daemon")) && (options.has("generate-hash-mappings")
+                || options.has("generate-mappings-from-hashes") || options.has("watch-mappings"))) {
+            System.err.println("Batch and daemon mode can only deobfuscate jars!");
+            return null;
+        }
+        if ((options.has("batch") || options.has("daemon")) && options.has("metrics-out")) {
+            System.err.println("Metrics can only be written for a single jar!");
+            return null;
+        }
+        try {
+            return DeobfuscationConfig.builder()
+                    .threads((Integer) options.valueOf("threads"))
+                    .memoryMapped(options.has("memory-map"))
+                    .classCacheSize((Integer) options.valueOf("class-cache-size") * 1024L * 1024L)
+                    .softClassCache(options.has("soft-class-cache"))
+                    .compressionLevel((Integer) options.valueOf("compression-level"))
+                    .debugPrint(options.has("debug-print"))
+                    .mappingsCache(options.has("mappings-cache"))
+                    .outputCacheDirectory((File) options.valueOf("cache-dir"))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + "!");
+            return null;
+        }
+    }
+
+    /**
+     * Returns false if the mappings couldn't be loaded or generated, or any of the jars failed to deobfuscate.
+     */
+    private boolean deobfuscate() {
+        Mappings mappings;
+        File classMappingsFile = (File) options.valueOf("class-mappings");
+        File memberMappingsFile = (File) options.valueOf("member-mappings");
+        RunMetrics.Phase loadPhase = metrics == null ? null : metrics.startPhase("load-mappings");
+        try {
+            mappings = session.loadMappings(classMappingsFile, memberMappingsFile);
         } catch (IOException e) {
-            System.err.println("Failed to deobfuscate classes!");
             e.printStackTrace();
-            return;
+            return false;
+        }
+        if (loadPhase != null) {
+            long bytesIn = mappings.isCached() ? MappingsCache.getCacheFile(classMappingsFile).length() : classMappingsFile.length() + memberMappingsFile.length();
+            loadPhase.setClasses(mappings.getClassMappings().size()).setBytes(bytesIn, 0).end();
         }
-        if (options.has("generate-hash-mappings")) {
-            System.out.println("Generating hashes...");
-            String hashMappingsFile = options.valueOf("class-mappings").toString();
-            String extension = hashMappingsFile.substring(hashMappingsFile.lastIndexOf('.'));
-            hashMappingsFile = hashMappingsFile.substring(0, hashMappingsFile.lastIndexOf('.')) + "-hashes" + extension;
-            try (JarLoader loader = new JarLoader(new JarFile(classRemappedJar)); PrintWriter writer = new PrintWriter(hashMappingsFile)) {
-                writeHashMappings(writer, loader, mappings);
+        if (mappings.isCached()) {
+            System.out.println("Loaded " + mappings.getClassMappings().size() + " class mappings and " + mappings.getMemberMappings().size()
+                    + " member mappings from " + MappingsCache.getCacheFile(classMappingsFile).getName() + " in " + mappings.getLoadTime() + "ms");
+        } else {
+            System.out.println("Loaded " + mappings.getClassMappings().size() + " class mappings (" + mappings.getClassLoadTime() + "ms) and "
+                    + mappings.getMemberMappings().size() + " member mappings (" + mappings.getMemberLoadTime() + "ms) in " + mappings.getLoadTime() + "ms");
+        }
+        if (options.has("batch") || options.has("daemon")) {
+            BatchDeobfuscator batchDeobfuscator = new BatchDeobfuscator(session, mappings, new AnonymousClassNameRemapper(mappings.getClassMappings()));
+            try {
+                int failed = 0;
+                if (options.has("batch")) {
+                    failed = batchDeobfuscator.runManifest((File) options.valueOf("batch"));
+                }
+                if (options.has("daemon")) {
+                    batchDeobfuscator.serve((Integer) options.valueOf("daemon"), (File) options.valueOf("daemon-token-file"));
+                }
+                return failed == 0;
             } catch (IOException e) {
-                System.err.println("Failed to generate hash mappings!");
+                System.err.println("Failed to run " + (options.has("daemon") ? "daemon" : "batch") + "!");
                 e.printStackTrace();
-                return;
+                return false;
             }
         }
+        long startTime = System.currentTimeMillis();
         if (options.has("generate-mappings-from-hashes")) {
-            System.out.println("Generating mappings from hashes...");
-            String generatedMappingsFile = options.valueOf("class-mappings").toString();
-            String extension = generatedMappingsFile.substring(generatedMappingsFile.lastIndexOf('.'));
-            generatedMappingsFile = generatedMappingsFile.substring(0, generatedMappingsFile.lastIndexOf('.')) + "-from-hashes" + extension;
-            try (JarLoader loader = new JarLoader(new JarFile(classRemappedJar)); PrintWriter writer = new PrintWriter(generatedMappingsFile)) {
-                generateNewMappingsFromHashes(loader, writer, mappings);
-            } catch (IOException e) {
-                System.err.println("Failed to generate mappings from hashes!");
-                e.printStackTrace();
+            if (!generateNewMappingsFromHashes(mappings)) {
+                return false;
+            }
+            if (!options.has("generate-hash-mappings")) {
+                writeMetrics();
+                return true;
             }
-            deleteClassRemappedJar(classRemappedJar);
-            return;
         }
-        try (JarLoader loader = new JarLoader(new JarFile(classRemappedJar)); JarWriter writer = new JarWriter((File) options.valueOf("remapped-file"), mappings)){
-            System.out.println("Remapping members...");
-            remapMembers(loader, writer, mappings);
+        try (JarLoader loader = session.openJar((File) options.valueOf("minecraft-jar"))) {
+            Remapper classRemapper = new AnonymousClassNameRemapper(mappings.getClassMappings());
+            // This includes building the hierarchy of the jar, which the lookup table is built from
+            RunMetrics.Phase lookupTablePhase = metrics == null ? null : metrics.startPhase("build-lookup-table");
+            MemberRemapper memberRemapper = new MemberRemapper(mappings.getMemberMappings(), loader, classRemapper, metrics != null);
+            if (lookupTablePhase != null) {
+                lookupTablePhase.setClasses(loader.getHierarchy().size()).end();
+            }
+            printLookupTable(memberRemapper);
+            // The hashes are taken while the classes are remapped, on the same threads
+            ClassHasher hasher = options.has("generate-hash-mappings") ? new ClassHasher(mappings, classRemapper) : null;
+            deobfuscateJar(session, loader, (File) options.valueOf("remapped-file"), mappings, classRemapper, memberRemapper, hasher, metrics);
+            if (hasher != null) {
+                writeHashMappings(hasher);
+            }
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            System.out.println("Deobfuscated " + mappings.getClassMappings().size() + " classes and " + mappings.getMemberMappings().size() + " member mappings in " + elapsedTime + "ms!");
+            writeMetrics();
+            if (options.has("watch-mappings")) {
+                new MappingsWatcher(session, loader, ReferenceIndex.build(loader, DeobfuscationSession.REMAPPED_CLASSES), classMappingsFile,
+                        memberMappingsFile, (File) options.valueOf("remapped-file"), mappings, classRemapper, memberRemapper).watch();
+            }
         } catch (IOException e) {
-            System.err.println("Failed to deobfuscate members!");
+            System.err.println("Failed to deobfuscate jar!");
             e.printStackTrace();
-            return;
+            return false;
         }
-        deleteClassRemappedJar(classRemappedJar);
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        System.out.println("Deobfuscated " + mappings.getClassMappings().size() + " classes and " + mappings.getMemberMappings().size() + " member mappings in " + elapsedTime + "ms!");
+        return true;
     }
 
-    private static void generateNewMappingsFromHashes(JarLoader loader, PrintWriter writer, Mappings mappings) {
-
+    /**
+     * Deobfuscates another jar with mappings that have already been loaded, as done in batch and daemon mode.
+     */
+    static void deobfuscateJar(DeobfuscationSession session, File jarFile, File outputFile, Mappings mappings, Remapper classRemapper)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        System.out.println("Deobfuscating " + jarFile.getName() + "...");
+        try (JarLoader loader = session.openJar(jarFile)) {
+            // The lookup table depends on the hierarchy of the jar, so only the class remapper can be shared
+            MemberRemapper memberRemapper = new MemberRemapper(mappings.getMemberMappings(), loader, classRemapper);
+            printLookupTable(memberRemapper);
+            deobfuscateJar(session, loader, outputFile, mappings, classRemapper, memberRemapper, null, null);
+        }
+        System.out.println("Deobfuscated " + jarFile.getName() + " to " + outputFile.getName() + " in " + (System.currentTimeMillis() - startTime) + "ms!");
     }
 
-    private static void deleteClassRemappedJar(String path) {
+    /**
+     * @param hasher  the hasher to hash the mapped classes with as they are remapped, or null to not hash them
+     * @param metrics the metrics to add the phases of the remapping to, or null to not measure them
+     */
+    private static void deobfuscateJar(DeobfuscationSession session, JarLoader loader, File outputFile, Mappings mappings, Remapper classRemapper,
+                                       MemberRemapper memberRemapper, ClassHasher hasher, RunMetrics metrics) throws IOException {
+        ClassOutputCache outputCache = session.createOutputCache(loader, mappings, classRemapper, memberRemapper);
+        RunMetrics.Phase remapPhase = metrics == null ? null : metrics.startPhase("remap");
+        JarWriter writer = session.createOutputWriter(outputFile, mappings);
+        if (metrics != null) {
+            writer.setTimed(true);
+            if (hasher != null) {
+                hasher.setTimed(true);
+            }
+        }
         try {
-            // This throws exceptions, so it is better than File#delete()
-            Files.delete(new File(path).toPath());
+            System.out.println("Deobfuscating classes and members...");
+            session.remapJar(loader, writer, mappings, classRemapper, memberRemapper, outputCache, hasher, metrics);
+        } finally {
+            writer.close();
+        }
+        if (metrics != null) {
+            remapPhase.setClasses(metrics.getRemappedClasses()).setBytes(metrics.getRemapBytesIn(), metrics.getRemapBytesOut()).end();
+            if (hasher != null) {
+                metrics.addPhase("hash", hasher.getHashTime(), hasher.getHashCpuTime(), hasher.size(), 0, 0);
+            }
+            metrics.addPhase("write-jar", writer.getWriteTime(), writer.getWriteCpuTime(), writer.getClassCount(), writer.getBytesIn(), writer.getBytesWritten());
+            metrics.addCache("classCache", loader.getCacheStats());
+            metrics.addCache("bridgeMethodCache", memberRemapper.getBridgeMethodCacheStats());
+            metrics.addCache("unmappedMethodCache", memberRemapper.getUnmappedMethodCacheStats());
+            metrics.addCache("unmappedFieldCache", memberRemapper.getUnmappedFieldCacheStats());
+            metrics.addCounter("switchMapArrays", memberRemapper.getSwitchMapCount());
+            metrics.addCounter("switchMapLookups", memberRemapper.getSwitchMapLookups());
+            metrics.addCounter("hierarchyResolutions", memberRemapper.getHierarchyResolutions());
+            metrics.addCounter("lookupTableSize", memberRemapper.getLookupTableSize());
+            if (outputCache != null) {
+                metrics.addCache("outputCache", new CacheStats(outputCache.getHits(), outputCache.getMisses(), 0, 0, 0, 0));
+            }
+        }
+        printCacheStats(loader);
+        printOutputCacheStats(outputCache);
+    }
+
+    /**
+     * Matches the classes of the minecraft jar to the classes in the mappings, which are for an older version of the
+     * jar, and writes the class mappings of the matched classes next to the class mappings.
+     */
+    /**
+     * Returns false if the mappings couldn't be generated.
+     */
+    private boolean generateNewMappingsFromHashes(Mappings mappings) {
+        if (!mappings.hasHashes() && !options.has("old-minecraft-jar")) {
+            System.err.println("The class mappings have no hashes, so the old minecraft jar is needed to generate mappings from them!");
+            return false;
+        }
+        System.out.println("Generating mappings from hashes...");
+        String generatedMappingsFile = options.valueOf("class-mappings").toString();
+        String extension = generatedMappingsFile.substring(generatedMappingsFile.lastIndexOf('.'));
+        generatedMappingsFile = generatedMappingsFile.substring(0, generatedMappingsFile.lastIndexOf('.')) + "-from-hashes" + extension;
+        long startTime = System.currentTimeMillis();
+        RunMetrics.Phase matchPhase = metrics == null ? null : metrics.startPhase("match-classes");
+        try (JarLoader loader = session.openJar((File) options.valueOf("minecraft-jar"))) {
+            ClassMatcher matcher = new ClassMatcher(mappings, loader);
+            matcher.matchHashes();
+            if (options.has("old-minecraft-jar")) {
+                try (JarLoader oldLoader = session.openJar((File) options.valueOf("old-minecraft-jar"))) {
+                    matcher.matchStructures(oldLoader);
+                }
+            }
+            try (PrintWriter writer = new PrintWriter(generatedMappingsFile)) {
+                matcher.writeMappings(writer);
+            }
+            System.out.println("Matched " + matcher.getHashMatches() + " classes by hash and " + matcher.getStructureMatches() + " by structure, "
+                    + matcher.getUnmatchedClasses() + " of " + mappings.getClassMappings().size() + " mapped classes are unmatched ("
+                    + (System.currentTimeMillis() - startTime) + "ms)");
+            if (matchPhase != null) {
+                matchPhase.setClasses(matcher.getHashMatches() + matcher.getStructureMatches()).end();
+            }
         } catch (IOException e) {
-            System.err.println("Failed to delete class remapped jar " + path + "!");
+            System.err.println("Failed to generate mappings from hashes!");
             e.printStackTrace();
+            return false;
         }
+        return true;
     }
 
-    private static void writeHashMappings(PrintWriter writer, JarLoader loader, Mappings mappings) {
-        for (Map.Entry<String, String> entry : mappings.getClassMappings().entrySet()) {
-            ClassData data = loader.getDataFor(entry.getValue());
-            if (data != null) {
-                writer.println(entry.getKey() + " " + entry.getValue() + " " + DigestUtils.md5Hex(data.getBytecode()));
-            }
+    private void writeMetrics() {
+        if (metrics == null) {
+            return;
+        }
+        File metricsFile = (File) options.valueOf("metrics-out");
+        try (PrintWriter writer = new PrintWriter(metricsFile, "UTF-8")) {
+            metrics.writeJson(writer);
+        } catch (IOException e) {
+            System.err.println("Failed to write metrics to " + metricsFile.getName() + "!");
+            e.printStackTrace();
         }
     }
 
-    private static void remapMembers(JarLoader loader, JarWriter writer, Mappings mappings) throws IOException {
-        MemberRemapper remapper = new MemberRemapper(mappings.getMemberMappings(), loader);
-        for (ElementData data : loader) {
-            if (data instanceof ResourceData) {
-                writer.write(data);
-            } else {
-                ClassData classData = (ClassData) data;
-                if (!classData.getInternalName().startsWith("net/minecraft/server/")) {
-                    writer.write(classData);
-                    continue;
-                }
-                ClassWriter classWriter = new ClassWriter(0);
-                ClassRemapper classRemapper = options.has("debug-print") ? new MemberPrinterClassRemapper(classWriter, remapper, loader) : new MemberClassRemapper(classWriter, remapper, loader);
-                classData.getNode().accept(classRemapper);
-                classData.setBytecode(classWriter.toByteArray());
-                writer.write(classData);
-            }
+    private void writeHashMappings(ClassHasher hasher) {
+        String hashMappingsFile = options.valueOf("class-mappings").toString();
+        String extension = hashMappingsFile.substring(hashMappingsFile.lastIndexOf('.'));
+        hashMappingsFile = hashMappingsFile.substring(0, hashMappingsFile.lastIndexOf('.')) + "-hashes" + extension;
+        try (PrintWriter writer = new PrintWriter(hashMappingsFile)) {
+            hasher.writeHashMappings(writer);
+            System.out.println("Wrote the hashes of " + hasher.size() + " classes to " + new File(hashMappingsFile).getName());
+        } catch (IOException e) {
+            System.err.println("Failed to generate hash mappings!");
+            e.printStackTrace();
         }
     }
 
-    private static void remapClasses(JarLoader loader, JarWriter writer, Mappings mappings) throws IOException {
-        Remapper remapper = new AnonymousClassNameRemapper(mappings.getClassMappings());
-        for (ElementData data : loader) {
-            if (data instanceof ResourceData) {
-                writer.write(data);
-            } else {
-                ClassData classData = (ClassData) data;
-                if (classData.getInternalName().contains("/") && !classData.getInternalName().startsWith("net/minecraft/server/")) {
-                    writer.write(classData);
-                    continue;
-                }
-                ClassWriter classWriter = new ClassWriter(0);
-                ClassRemapper classRemapper = new InnerNameClassRemapper(classWriter, remapper, mappings);
-                classData.getNode().accept(classRemapper);
-                classData.setBytecode(classWriter.toByteArray());
-                writer.write(classData);
-                if (options.has("debug-print") && mappings.getClassMappings().containsKey(classData.getInternalName())) {
-                    System.out.println("Remapped " + classData.getInternalName() + " to " + mappings.getClassMappings()
-                            .get(classData.getInternalName()));
-                }
-            }
+    static void printLookupTable(MemberRemapper remapper) {
+        System.out.println("Built member lookup table with " + remapper.getLookupTableSize() + " entries in " + remapper.getLookupTableBuildTime() + "ms");
+        System.out.println("Found " + remapper.getSwitchMapCount() + " SwitchMap arrays");
+        for (String diagnostic : remapper.getSwitchMapDiagnostics()) {
+            System.err.println(diagnostic + ", it will keep its name!");
+        }
+    }
+
+    private static void printCacheStats(JarLoader loader) {
+        CacheStats stats = loader.getCacheStats();
+        System.out.println(String.format("Class cache: %d hits, %d misses (%.1f%% hit rate), %d loads averaging %.2fms, %d evictions",
+                stats.hitCount(), stats.missCount(), stats.hitRate() * 100, stats.loadCount(), stats.averageLoadPenalty() / 1_000_000, stats.evictionCount()));
+    }
+
+    static void printOutputCacheStats(ClassOutputCache outputCache) {
+        if (outputCache != null) {
+            System.out.println("Output cache: " + outputCache.getHits() + " classes reused, " + outputCache.getMisses() + " remapped");
         }
     }
 }
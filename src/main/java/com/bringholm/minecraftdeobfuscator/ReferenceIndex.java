@@ -0,0 +1,237 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.ClassHierarchy;
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jario.ZipArchive;
+import com.bringholm.minecraftdeobfuscator.remapper.MemberRemapper;
+import com.bringholm.minecraftdeobfuscator.util.ConstantPoolReader;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * For every class, member and lambda name that is referenced in the jar, the classes that reference it. This is
+ * built once from the constant pools and declared members of the classes, and is then used to find out which
+ * classes a change to the mappings affects, so that only those have to be remapped again.
+ * <p>
+ * Everything is kept in the obfuscated names, which don't change between mappings. A class is affected if one of
+ * the names it references is resolved differently by the old and the new remappers.
+ */
+public class ReferenceIndex {
+    // Class name -> classes referencing it
+    private final Map<String, Set<String>> classReferences = new HashMap<>();
+    private final Map<Reference, Set<String>> methodReferences = new HashMap<>();
+    private final Map<Reference, Set<String>> fieldReferences = new HashMap<>();
+    // Only the name and descriptor are set
+    private final Map<Reference, Set<String>> invokeDynamicReferences = new HashMap<>();
+    private final Set<String> classes = new HashSet<>();
+    private long buildTime;
+
+    private ReferenceIndex() {
+    }
+
+    /**
+     * Indexes the references of the classes in the jar that pass the filter, which should be the ones that are
+     * remapped.
+     */
+    public static ReferenceIndex build(JarLoader loader, Predicate<String> classFilter) throws IOException {
+        long startTime = System.currentTimeMillis();
+        ReferenceIndex index = new ReferenceIndex();
+        ClassHierarchy hierarchy = loader.getHierarchy();
+        for (ZipArchive.Entry entry : loader.getEntries()) {
+            String name = entry.getName();
+            if (!name.endsWith(".class")) {
+                continue;
+            }
+            String className = name.substring(0, name.length() - ".class".length());
+            if (classFilter.test(className)) {
+                index.addClass(className, loader.readEntry(entry), hierarchy.getClass(className));
+            }
+        }
+        index.buildTime = System.currentTimeMillis() - startTime;
+        return index;
+    }
+
+    private void addClass(String className, byte[] bytecode, ClassHierarchy.ClassInfo info) {
+        classes.add(className);
+        // Records the class names used in descriptors and signatures
+        Remapper classNameCollector = new Remapper() {
+            @Override
+            public String map(String typeName) {
+                add(classReferences, typeName, className);
+                return null;
+            }
+        };
+        ConstantPoolReader.accept(bytecode, new ConstantPoolReader.ReferenceVisitor() {
+            @Override
+            public void visitString(String string) {
+                if (ConstantPoolReader.mayBeSignature(string)) {
+                    try {
+                        classNameCollector.mapSignature(string, false);
+                    } catch (RuntimeException ignored) {
+                        // Not a signature after all
+                    }
+                }
+            }
+
+            @Override
+            public void visitClass(String name) {
+                add(classReferences, name, className);
+            }
+
+            @Override
+            public void visitField(String owner, String name, String desc) {
+                add(fieldReferences, new Reference(owner, name, desc), className);
+            }
+
+            @Override
+            public void visitMethod(String owner, String name, String desc) {
+                add(methodReferences, new Reference(owner, name, desc), className);
+            }
+
+            @Override
+            public void visitInvokeDynamic(String name, String desc) {
+                add(invokeDynamicReferences, new Reference(null, name, desc), className);
+            }
+        });
+        // The declared members aren't in the constant pool unless the class uses them itself
+        if (info != null) {
+            for (Map.Entry<String, Map<String, Integer>> entry : info.getMethods().entrySet()) {
+                for (String desc : entry.getValue().keySet()) {
+                    add(methodReferences, new Reference(className, entry.getKey(), desc), className);
+                }
+            }
+            for (Map.Entry<String, Map<String, Integer>> entry : info.getFields().entrySet()) {
+                for (String desc : entry.getValue().keySet()) {
+                    add(fieldReferences, new Reference(className, entry.getKey(), desc), className);
+                }
+            }
+        }
+    }
+
+    private static <K> void add(Map<K, Set<String>> references, K key, String className) {
+        references.computeIfAbsent(key, k -> new HashSet<>(2)).add(className);
+    }
+
+    /**
+     * Gets the amount of classes whose references were indexed.
+     */
+    public int size() {
+        return classes.size();
+    }
+
+    /**
+     * Gets how long it took to build the index, in milliseconds.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Finds the classes whose output differs between the old and the new mappings. The diff of the mappings is used
+     * to skip the references that can't have changed: unless a class mapping changed, only the members with the same
+     * obfuscated name as a changed member mapping are resolved again.
+     *
+     * @param oldClassRemapper  the class remapper of the old mappings, which the old member remapper is based on
+     * @param newClassRemapper  the class remapper of the new mappings, which the new member remapper is based on
+     */
+    public Set<String> getAffectedClasses(Mappings oldMappings, Remapper oldClassRemapper, MemberRemapper oldMemberRemapper,
+                                          Mappings newMappings, Remapper newClassRemapper, MemberRemapper newMemberRemapper) {
+        Set<String> affectedClasses = new HashSet<>();
+        boolean classMappingsChanged = !oldMappings.getClassMappings().equals(newMappings.getClassMappings());
+        Set<String> changedMemberNames = getChangedMemberNames(oldMappings.getMemberMappings(), newMappings.getMemberMappings());
+        if (!classMappingsChanged && changedMemberNames.isEmpty()) {
+            return affectedClasses;
+        }
+        if (classMappingsChanged) {
+            for (Map.Entry<String, Set<String>> entry : classReferences.entrySet()) {
+                String name = entry.getKey();
+                // Inner class names are taken from the mappings directly
+                if (!oldClassRemapper.mapType(name).equals(newClassRemapper.mapType(name))
+                        || !Objects.equals(oldMappings.getClassMappings().get(name), newMappings.getClassMappings().get(name))) {
+                    affectedClasses.addAll(entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<Reference, Set<String>> entry : methodReferences.entrySet()) {
+            Reference reference = entry.getKey();
+            if (classMappingsChanged || changedMemberNames.contains(reference.name)) {
+                if (!oldMemberRemapper.mapMethodName(reference.owner, reference.name, reference.desc).equals(newMemberRemapper.mapMethodName(reference.owner, reference.name, reference.desc))
+                        || classMappingsChanged && oldMemberRemapper.isMissingBridgeModifier(reference.owner, reference.name, reference.desc)
+                        != newMemberRemapper.isMissingBridgeModifier(reference.owner, reference.name, reference.desc)) {
+                    affectedClasses.addAll(entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<Reference, Set<String>> entry : fieldReferences.entrySet()) {
+            Reference reference = entry.getKey();
+            if ((classMappingsChanged || changedMemberNames.contains(reference.name))
+                    && !oldMemberRemapper.mapFieldName(reference.owner, reference.name, reference.desc).equals(newMemberRemapper.mapFieldName(reference.owner, reference.name, reference.desc))) {
+                affectedClasses.addAll(entry.getValue());
+            }
+        }
+        for (Map.Entry<Reference, Set<String>> entry : invokeDynamicReferences.entrySet()) {
+            Reference reference = entry.getKey();
+            if ((classMappingsChanged || changedMemberNames.contains(reference.name))
+                    && !oldMemberRemapper.mapInvokeDynamicMethodName(reference.name, reference.desc).equals(newMemberRemapper.mapInvokeDynamicMethodName(reference.name, reference.desc))) {
+                affectedClasses.addAll(entry.getValue());
+            }
+        }
+        return affectedClasses;
+    }
+
+    /**
+     * Gets the obfuscated names of the members whose mapping was added, removed or changed. The member mappings are
+     * keyed by owner.name for fields and owner.name(descriptor) for methods.
+     */
+    private static Set<String> getChangedMemberNames(Map<String, String> oldMappings, Map<String, String> newMappings) {
+        Set<String> names = new HashSet<>();
+        for (Map.Entry<String, String> entry : oldMappings.entrySet()) {
+            if (!entry.getValue().equals(newMappings.get(entry.getKey()))) {
+                names.add(getMemberName(entry.getKey()));
+            }
+        }
+        for (String key : newMappings.keySet()) {
+            if (!oldMappings.containsKey(key)) {
+                names.add(getMemberName(key));
+            }
+        }
+        return names;
+    }
+
+    private static String getMemberName(String key) {
+        int descIndex = key.indexOf('(');
+        return key.substring(key.indexOf('.') + 1, descIndex == -1 ? key.length() : descIndex);
+    }
+
+    private static class Reference {
+        private final String owner;
+        private final String name;
+        private final String desc;
+
+        private Reference(String owner, String name, String desc) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Reference)) {
+                return false;
+            }
+            Reference reference = (Reference) o;
+            return Objects.equals(owner, reference.owner) && name.equals(reference.name) && desc.equals(reference.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(owner, name, desc);
+        }
+    }
+}
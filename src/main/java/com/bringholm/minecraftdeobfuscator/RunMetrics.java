@@ -0,0 +1,162 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.util.CpuClock;
+import com.google.common.cache.CacheStats;
+
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The time taken and the amount of data processed by each phase of a run, along with the hit rates of the caches
+ * used while remapping, written as JSON so the runs of different builds can be compared.
+ * <p>
+ * The phases that run on their own are timed on the wall clock and by the CPU time of the whole JVM. Hashing and
+ * writing the jar happen during the remap phase, on the threads that remap and compress the classes, so their
+ * times are the sum of the time each of those threads spent on them and overlap with the remap phase.
+ */
+public class RunMetrics {
+    private final String startTime = Instant.now().toString();
+    private final long startNanos = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, CacheStats> caches = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    // Recorded by the threads that remap the classes
+    private final LongAdder remappedClasses = new LongAdder();
+    private final LongAdder remapBytesIn = new LongAdder();
+    private final LongAdder remapBytesOut = new LongAdder();
+
+    /**
+     * Starts timing a phase, which is added to the report once it has ended.
+     */
+    public Phase startPhase(String name) {
+        return new Phase(name, System.nanoTime(), CpuClock.processTime());
+    }
+
+    /**
+     * Adds a phase whose time was summed up over the threads it ran on.
+     */
+    public synchronized void addPhase(String name, long time, long cpuTime, long classes, long bytesIn, long bytesOut) {
+        Phase phase = new Phase(name, 0, 0);
+        phase.time = time;
+        phase.cpuTime = cpuTime;
+        phase.classes = classes;
+        phase.bytesIn = bytesIn;
+        phase.bytesOut = bytesOut;
+        phases.add(phase);
+    }
+
+    public synchronized void addCache(String name, CacheStats stats) {
+        caches.put(name, stats);
+    }
+
+    public synchronized void addCounter(String name, long value) {
+        counters.put(name, value);
+    }
+
+    /**
+     * Records a class that went through the remap phase. This may be called from several threads at once.
+     */
+    void recordRemappedClass(int bytesIn, int bytesOut) {
+        remappedClasses.increment();
+        remapBytesIn.add(bytesIn);
+        remapBytesOut.add(bytesOut);
+    }
+
+    long getRemappedClasses() {
+        return remappedClasses.sum();
+    }
+
+    long getRemapBytesIn() {
+        return remapBytesIn.sum();
+    }
+
+    long getRemapBytesOut() {
+        return remapBytesOut.sum();
+    }
+
+    public synchronized void writeJson(PrintWriter writer) {
+        writer.println("{");
+        writer.println("  \"startTime\": \"" + startTime + "\",");
+        writer.println("  \"wallMs\": " + formatMillis(System.nanoTime() - startNanos) + ",");
+        writer.println("  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            double seconds = phase.time / 1e9;
+            writer.print("    {\"name\": \"" + phase.name + "\", \"wallMs\": " + formatMillis(phase.time) + ", \"cpuMs\": " + formatMillis(phase.cpuTime)
+                    + ", \"classes\": " + phase.classes + ", \"classesPerSecond\": " + format(seconds > 0 ? phase.classes / seconds : 0)
+                    + ", \"bytesIn\": " + phase.bytesIn + ", \"bytesOut\": " + phase.bytesOut + "}");
+            writer.println(i == phases.size() - 1 ? "" : ",");
+        }
+        writer.println("  ],");
+        writer.println("  \"caches\": {");
+        int i = 0;
+        for (Map.Entry<String, CacheStats> entry : caches.entrySet()) {
+            CacheStats stats = entry.getValue();
+            writer.print("    \"" + entry.getKey() + "\": {\"hits\": " + stats.hitCount() + ", \"misses\": " + stats.missCount()
+                    + ", \"hitRate\": " + format(stats.hitRate()) + ", \"evictions\": " + stats.evictionCount() + "}");
+            writer.println(++i == caches.size() ? "" : ",");
+        }
+        writer.println("  },");
+        writer.println("  \"counters\": {");
+        i = 0;
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            writer.print("    \"" + entry.getKey() + "\": " + entry.getValue());
+            writer.println(++i == counters.size() ? "" : ",");
+        }
+        writer.println("  }");
+        writer.println("}");
+    }
+
+    private static String formatMillis(long nanos) {
+        return nanos == -1 ? "-1" : format(nanos / 1e6);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    public class Phase {
+        private final String name;
+        private final long startTime;
+        private final long startCpuTime;
+        private long time;
+        private long cpuTime;
+        private long classes;
+        private long bytesIn;
+        private long bytesOut;
+
+        private Phase(String name, long startTime, long startCpuTime) {
+            this.name = name;
+            this.startTime = startTime;
+            this.startCpuTime = startCpuTime;
+        }
+
+        public Phase setClasses(long classes) {
+            this.classes = classes;
+            return this;
+        }
+
+        public Phase setBytes(long bytesIn, long bytesOut) {
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            return this;
+        }
+
+        /**
+         * Stops timing the phase and adds it to the report.
+         */
+        public void end() {
+            time = System.nanoTime() - startTime;
+            cpuTime = CpuClock.elapsed(startCpuTime, CpuClock.processTime());
+            synchronized (RunMetrics.this) {
+                phases.add(this);
+            }
+        }
+    }
+}
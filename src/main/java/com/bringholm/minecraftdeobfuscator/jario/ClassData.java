@@ -1,54 +1,106 @@
 package com.bringholm.minecraftdeobfuscator.jario;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * A class in the jar. The class is only parsed as far as it is needed: the header (access, superclass and
+ * interfaces) is read right away, the members are parsed without their code the first time they are looked
+ * up, and the code is only parsed once the whole node is needed.
+ */
 public class ClassData implements ElementData {
 
-    private Map<String, MethodNode> methods = new HashMap<>();
-    private Map<String, FieldNode> fields = new HashMap<>();
-    private ClassNode node;
-    private String name;
+    // These are shared between threads when the ClassData comes from the JarLoader's cache.
+    // Name -> descriptor -> node, so that looking up a member doesn't need to build a key
+    private Map<String, Map<String, MethodNode>> methods = new ConcurrentHashMap<>();
+    private Map<String, Map<String, FieldNode>> fields = new ConcurrentHashMap<>();
+    private final String name;
+    private final JarLoader loader;
+    private final byte[] classBytes;
+    private final int access;
+    private final String superName;
+    private final String[] interfaces;
     private byte[] bytecode;
-    private Set<ClassData> superClasses;
+    private volatile ClassNode memberNode;
+    private volatile ClassNode node;
+    private volatile Set<ClassData> superClasses;
 
-    ClassData(ClassNode node, String name, JarLoader loader, byte[] bytecode) {
-        this.node = node;
+    ClassData(String name, JarLoader loader, byte[] bytecode) {
         this.name = name;
-        if (bytecode != null) {
-            this.bytecode = bytecode;
-        }
-        this.superClasses = new HashSet<>();
-        //noinspection unchecked
-        for (String interfaceName : (List<String>) node.interfaces) {
-            ClassData data = loader.getDataFor(interfaceName);
-            if (data != null) {
-                superClasses.add(data);
-            }
-        }
-        if (node.superName != null) {
-            ClassData data = loader.getDataFor(node.superName);
-            if (data != null) {
-                superClasses.add(data);
-            }
-        }
+        this.loader = loader;
+        this.classBytes = bytecode;
+        this.bytecode = bytecode;
+        ClassReader classReader = new ClassReader(bytecode);
+        this.access = classReader.getAccess();
+        this.superName = classReader.getSuperName();
+        this.interfaces = classReader.getInterfaces();
     }
 
     public String getInternalName() {
         return name;
     }
 
+    public int getAccess() {
+        return access;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public String[] getInterfaces() {
+        return interfaces.clone();
+    }
+
     public boolean isAnonymousInnerClass() {
-        return node.outerClass != null && node.name.contains("$") && node.name.substring(node.name.lastIndexOf('$') + 1).matches("[0-9]+");
+        return getMemberNode().outerClass != null && name.contains("$") && name.substring(name.lastIndexOf('$') + 1).matches("[0-9]+");
     }
 
+    /**
+     * Gets the whole class, including the code of the methods. This parses the class the first time it is called.
+     */
     public ClassNode getNode() {
+        ClassNode node = this.node;
+        if (node == null) {
+            synchronized (this) {
+                node = this.node;
+                if (node == null) {
+                    node = new ClassNode();
+                    new ClassReader(classBytes).accept(node, ClassReader.EXPAND_FRAMES);
+                    this.node = node;
+                }
+            }
+        }
         return node;
     }
 
+    /**
+     * Gets the class with its fields and methods, but without the code of the methods (the instruction lists are
+     * empty). If the whole class has already been parsed, that node is returned instead.
+     */
+    public ClassNode getMemberNode() {
+        ClassNode node = this.node;
+        if (node != null) {
+            return node;
+        }
+        node = this.memberNode;
+        if (node == null) {
+            synchronized (this) {
+                node = this.memberNode;
+                if (node == null) {
+                    node = new ClassNode();
+                    new ClassReader(classBytes).accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    this.memberNode = node;
+                }
+            }
+        }
+        return node;
+    }
 
     public byte[] getBytecode() {
         return bytecode;
@@ -58,15 +110,34 @@ public class ClassData implements ElementData {
         this.bytecode = bytecode;
     }
 
-
+    /**
+     * Gets the declaration of a method, which doesn't necessarily include its code.
+     *
+     * @see #getMethodWithCode(String, String)
+     */
     public MethodNode getMethod(String name, String desc) {
-        if (methods.containsKey(name + desc)) {
-            return methods.get(name + desc);
+        Map<String, MethodNode> descs = methods.get(name);
+        MethodNode cached = descs == null ? null : descs.get(desc);
+        if (cached != null) {
+            return cached;
+        }
+        //noinspection unchecked
+        for (MethodNode methodNode : (List<MethodNode>) getMemberNode().methods) {
+            if (methodNode.name.equals(name) && methodNode.desc.equals(desc)) {
+                methods.computeIfAbsent(name, key -> new ConcurrentHashMap<>(2)).put(desc, methodNode);
+                return methodNode;
+            }
         }
+        return null;
+    }
+
+    /**
+     * Gets a method from the whole class, so that its instructions can be read.
+     */
+    public MethodNode getMethodWithCode(String name, String desc) {
         //noinspection unchecked
-        for (MethodNode methodNode : (List<MethodNode>) node.methods) {
+        for (MethodNode methodNode : (List<MethodNode>) getNode().methods) {
             if (methodNode.name.equals(name) && methodNode.desc.equals(desc)) {
-                methods.put(name + desc, methodNode);
                 return methodNode;
             }
         }
@@ -74,20 +145,42 @@ public class ClassData implements ElementData {
     }
 
     public FieldNode getField(String name, String desc) {
-        if (fields.containsKey(name + desc)) {
-            return fields.get(name + desc);
+        Map<String, FieldNode> descs = fields.get(name);
+        FieldNode cached = descs == null ? null : descs.get(desc);
+        if (cached != null) {
+            return cached;
         }
         //noinspection unchecked
-        for (FieldNode fieldNode : (List<FieldNode>) node.fields) {
+        for (FieldNode fieldNode : (List<FieldNode>) getMemberNode().fields) {
             if (fieldNode.name.equals(name) && fieldNode.desc.equals(desc)) {
-                fields.put(name + desc, fieldNode);
+                fields.computeIfAbsent(name, key -> new ConcurrentHashMap<>(2)).put(desc, fieldNode);
                 return fieldNode;
             }
         }
         return null;
     }
 
+    /**
+     * Gets the supertypes of this class which are in the jar. These are looked up the first time this is called.
+     */
     public Set<ClassData> getSuperClasses() {
+        Set<ClassData> superClasses = this.superClasses;
+        if (superClasses == null) {
+            superClasses = new HashSet<>();
+            for (String interfaceName : interfaces) {
+                ClassData data = loader.getDataFor(interfaceName);
+                if (data != null) {
+                    superClasses.add(data);
+                }
+            }
+            if (superName != null) {
+                ClassData data = loader.getDataFor(superName);
+                if (data != null) {
+                    superClasses.add(data);
+                }
+            }
+            this.superClasses = superClasses;
+        }
         return superClasses;
     }
 
@@ -0,0 +1,174 @@
+package com.bringholm.minecraftdeobfuscator.jario;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The supertypes, subtypes and members of every class in a jar. This is built once by reading the headers and
+ * member signatures of all classes (the code is skipped), so looking up the hierarchy afterwards doesn't have
+ * to load or parse anything. Classes that aren't in the jar, like the ones from the JDK, are not included.
+ */
+public class ClassHierarchy {
+    /**
+     * Returned by {@link ClassInfo#getMethodAccess(String, String)} and {@link ClassInfo#getFieldAccess(String, String)}
+     * if the class doesn't declare the member.
+     */
+    public static final int NOT_DECLARED = -1;
+
+    private Map<String, ClassInfo> classes;
+
+    private ClassHierarchy(Map<String, ClassInfo> classes) {
+        this.classes = classes;
+    }
+
+    public static ClassHierarchy build(JarLoader loader) throws IOException {
+        Map<String, ClassInfo> classes = new HashMap<>();
+        for (ZipArchive.Entry entry : loader.getEntries()) {
+            if (!entry.getName().endsWith(".class")) {
+                continue;
+            }
+            ClassInfo info = new ClassInfo();
+            new ClassReader(loader.readEntry(entry)).accept(info.new Reader(), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            classes.putIfAbsent(info.name, info);
+        }
+        for (ClassInfo info : classes.values()) {
+            // Same order as the supertypes of ClassData, interfaces first
+            for (String interfaceName : info.interfaceNames) {
+                info.addSuperType(classes.get(interfaceName));
+            }
+            if (info.superName != null) {
+                info.addSuperType(classes.get(info.superName));
+            }
+        }
+        return new ClassHierarchy(classes);
+    }
+
+    /**
+     * Gets the class with the internal name, or null if it isn't in the jar.
+     */
+    public ClassInfo getClass(String name) {
+        return classes.get(name);
+    }
+
+    public Collection<ClassInfo> getClasses() {
+        return Collections.unmodifiableCollection(classes.values());
+    }
+
+    public int size() {
+        return classes.size();
+    }
+
+    public static class ClassInfo {
+        private String name;
+        private int access;
+        private String superName;
+        private String[] interfaceNames;
+        private List<ClassInfo> superTypes = new ArrayList<>(2);
+        private List<ClassInfo> subTypes = new ArrayList<>(0);
+        // Name -> descriptor -> access, so that looking up a member doesn't need to build a key
+        private Map<String, Map<String, Integer>> methods = new HashMap<>();
+        private Map<String, Map<String, Integer>> fields = new HashMap<>();
+
+        private void addSuperType(ClassInfo superType) {
+            if (superType != null) {
+                superTypes.add(superType);
+                superType.subTypes.add(this);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAccess() {
+            return access;
+        }
+
+        /**
+         * Gets the direct supertypes that are in the jar, the interfaces followed by the superclass.
+         */
+        public List<ClassInfo> getSuperTypes() {
+            return Collections.unmodifiableList(superTypes);
+        }
+
+        /**
+         * Gets the classes in the jar that directly extend or implement this class.
+         */
+        public List<ClassInfo> getSubTypes() {
+            return Collections.unmodifiableList(subTypes);
+        }
+
+        public int getMethodAccess(String name, String desc) {
+            return getAccess(methods, name, desc);
+        }
+
+        public int getFieldAccess(String name, String desc) {
+            return getAccess(fields, name, desc);
+        }
+
+        /**
+         * Gets the declared methods as a map of name to descriptor to access.
+         */
+        public Map<String, Map<String, Integer>> getMethods() {
+            return Collections.unmodifiableMap(methods);
+        }
+
+        /**
+         * Gets the declared fields as a map of name to descriptor to access.
+         */
+        public Map<String, Map<String, Integer>> getFields() {
+            return Collections.unmodifiableMap(fields);
+        }
+
+        private static int getAccess(Map<String, Map<String, Integer>> members, String name, String desc) {
+            Map<String, Integer> descs = members.get(name);
+            if (descs == null) {
+                return NOT_DECLARED;
+            }
+            Integer access = descs.get(desc);
+            return access == null ? NOT_DECLARED : access;
+        }
+
+        @Override
+        public String toString() {
+            return "ClassInfo{name=" + name + "}";
+        }
+
+        private class Reader extends ClassVisitor {
+            private Reader() {
+                super(Opcodes.ASM6);
+            }
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                ClassInfo.this.name = name;
+                ClassInfo.this.access = access;
+                ClassInfo.this.superName = superName;
+                ClassInfo.this.interfaceNames = interfaces == null ? new String[0] : interfaces;
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                fields.computeIfAbsent(name, k -> new HashMap<>(2)).put(desc, access);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                methods.computeIfAbsent(name, k -> new HashMap<>(2)).put(desc, access);
+                return null;
+            }
+        }
+    }
+}
@@ -1,49 +1,129 @@
 package com.bringholm.minecraftdeobfuscator.jario;
 
+import com.bringholm.minecraftdeobfuscator.jfr.RemapEvents;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import org.apache.commons.io.IOUtils;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.ClassNode;
 
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 public class JarLoader implements Iterable<ElementData>, AutoCloseable {
+    // Null when the jar is read through a memory mapped or in memory ZipArchive instead
     private JarFile jarFile;
-    private LoadingCache<String, ClassData> classCache = CacheBuilder.newBuilder().maximumSize(4096L).build(new CacheLoader<String, ClassData>() {
-        @Override
-        public ClassData load(String key) throws Exception {
-            return loadClassFromJar(key);
-        }
-    });
+    private ZipArchive archive;
+    private Predicate<String> classFilter = className -> true;
+    /**
+     * The default size of the class cache, in bytes.
+     */
+    public static final long DEFAULT_CACHE_SIZE = 128L * 1024 * 1024;
+    // A parsed class takes up a lot more memory than its bytecode, this is roughly how much more once the code is parsed
+    private static final int CLASS_SIZE_FACTOR = 8;
+
+    private volatile ClassHierarchy hierarchy;
+    private LoadingCache<String, ClassData> classCache;
 
-    public JarLoader(JarFile jarFile) {
+    public JarLoader(JarFile jarFile) throws IOException {
         this.jarFile = jarFile;
+        this.classCache = createCache(DEFAULT_CACHE_SIZE, false);
+        try {
+            this.archive = new ZipArchive(new File(jarFile.getName()));
+        } catch (IOException e) {
+            jarFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param memoryMapped whether to memory map the jar and read all entries through the {@link ZipArchive}, rather
+     *                     than looking them up and inflating them through a JarFile. This makes the random accesses
+     *                     to the jar done by {@link #getDataFor(String)} a lot cheaper.
+     */
+    public JarLoader(File file, boolean memoryMapped) throws IOException {
+        this(file, memoryMapped, DEFAULT_CACHE_SIZE, false);
+    }
+
+    /**
+     * @param cacheSize  roughly how many bytes the classes cached for {@link #getDataFor(String)} may take up. The
+     *                   size of a class is estimated from its bytecode when it is loaded.
+     * @param softValues whether the cached classes should also be held by soft references, so they can be collected
+     *                   if memory runs out before the cache is full
+     */
+    public JarLoader(File file, boolean memoryMapped, long cacheSize, boolean softValues) throws IOException {
+        this.classCache = createCache(cacheSize, softValues);
+        if (memoryMapped) {
+            this.archive = new ZipArchive(file, true);
+        } else {
+            this.jarFile = new JarFile(file);
+            try {
+                this.archive = new ZipArchive(file);
+            } catch (IOException e) {
+                jarFile.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Reads all entries through the archive, which is closed together with the loader. This is how jars that are
+     * already in memory are loaded.
+     */
+    public JarLoader(ZipArchive archive, long cacheSize, boolean softValues) {
+        this.classCache = createCache(cacheSize, softValues);
+        this.archive = archive;
+    }
+
+    /**
+     * Sets which classes should be loaded as {@link ClassData} when iterating over the jar. The classes that
+     * don't pass the filter, as well as all resources, are not inflated or parsed at all. They are returned
+     * as {@link ResourceData} holding their compressed bytes, so they can be copied to the output as they are.
+     * This only affects the iteration, {@link #getDataFor(String)} can still load any class.
+     */
+    public void setClassFilter(Predicate<String> classFilter) {
+        this.classFilter = classFilter;
+    }
+
+    private LoadingCache<String, ClassData> createCache(long cacheSize, boolean softValues) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (softValues) {
+            builder.softValues();
+        }
+        return builder.maximumWeight(cacheSize)
+                .weigher((String name, ClassData data) -> (int) Math.min(Integer.MAX_VALUE, (long) data.getBytecode().length * CLASS_SIZE_FACTOR))
+                .build(new CacheLoader<String, ClassData>() {
+                    @Override
+                    public ClassData load(String key) throws Exception {
+                        return loadClassFromJar(key);
+                    }
+                });
+    }
+
+    /**
+     * Gets the hits, misses, load times and evictions of the cache used by {@link #getDataFor(String)}.
+     */
+    public CacheStats getCacheStats() {
+        return classCache.stats();
     }
 
     public Iterator<ElementData> iterator() {
         return new Iterator<ElementData>() {
-            private Enumeration<JarEntry> entries = jarFile.entries();
+            private Iterator<ZipArchive.Entry> entries = archive.getEntries().iterator();
 
             @Override
             public boolean hasNext() {
-                return entries.hasMoreElements();
+                return entries.hasNext();
             }
 
             @Override
             public ElementData next() {
                 try {
-                    JarEntry entry = entries.nextElement();
-                    if (entry.getName().endsWith(".class")) {
-                        return loadClassFromJar(entry);
-                    } else {
-                        return new ResourceData(IOUtils.toByteArray(jarFile.getInputStream(entry)), entry);
-                    }
+                    return loadElement(entries.next());
                 } catch (IOException e) {
                     e.printStackTrace();
                     return null;
@@ -52,18 +132,77 @@ public class JarLoader implements Iterable<ElementData>, AutoCloseable {
         };
     }
 
+    /**
+     * Gets all of the entries in the jar, in the order they are stored in. Together with
+     * {@link #loadElement(ZipArchive.Entry)} this allows the entries to be loaded on other threads
+     * than the one iterating over them.
+     */
+    public List<ZipArchive.Entry> getEntries() {
+        return archive.getEntries();
+    }
+
+    public ElementData loadElement(ZipArchive.Entry entry) throws IOException {
+        String name = entry.getName();
+        if (name.endsWith(".class") && classFilter.test(name.substring(0, name.length() - ".class".length()))) {
+            return jarFile == null ? loadClassFromArchive(entry) : loadClassFromJar(jarFile.getJarEntry(name));
+        } else {
+            return new ResourceData(entry, archive.readRawData(entry));
+        }
+    }
+
+    /**
+     * Reads and inflates the bytes of an entry, without creating any ElementData for it.
+     */
+    public byte[] readEntry(ZipArchive.Entry entry) throws IOException {
+        return archive.readData(entry);
+    }
+
+    /**
+     * Gets the hierarchy of all classes in the jar, which is built the first time this is called.
+     */
+    public ClassHierarchy getHierarchy() throws IOException {
+        if (hierarchy == null) {
+            synchronized (this) {
+                if (hierarchy == null) {
+                    hierarchy = ClassHierarchy.build(this);
+                }
+            }
+        }
+        return hierarchy;
+    }
+
     public ClassData loadClassFromJar(String internalName) throws IOException {
+        if (jarFile == null) {
+            return loadClassFromArchive(archive.getEntry(internalName + ".class"));
+        }
         return loadClassFromJar(jarFile.getJarEntry(internalName + ".class"));
     }
 
     public ClassData loadClassFromJar(JarEntry entry) throws IOException {
         if (entry != null) {
+            if (jarFile == null) {
+                return loadClassFromArchive(archive.getEntry(entry.getName()));
+            }
             return getClassData(jarFile.getInputStream(entry), entry.getName().replace(".class", ""));
         }
         return null;
     }
 
+    private ClassData loadClassFromArchive(ZipArchive.Entry entry) throws IOException {
+        if (entry != null) {
+            Object event = RemapEvents.beginClassLoad();
+            byte[] bytes = archive.readData(entry);
+            String className = entry.getName().replace(".class", "");
+            RemapEvents.endClassLoad(event, className, bytes.length);
+            return new ClassData(className, this, bytes);
+        }
+        return null;
+    }
+
     public boolean hasClass(String className) {
+        if (jarFile == null) {
+            return archive.getEntry(className + ".class") != null;
+        }
         return jarFile.getJarEntry(className + ".class") != null;
     }
 
@@ -80,18 +219,19 @@ public class JarLoader implements Iterable<ElementData>, AutoCloseable {
     }
 
     private ClassData getClassData(InputStream inputStream, String name) throws IOException {
+        Object event = RemapEvents.beginClassLoad();
         byte[] bytes = IOUtils.toByteArray(inputStream);
-        return new ClassData(getClassNodeFromBytes(bytes), name, this, bytes);
-    }
-
-    private ClassNode getClassNodeFromBytes(byte[] bytes) {
-        ClassReader classReader = new ClassReader(bytes);
-        ClassNode classNode = new ClassNode();
-        classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
-        return classNode;
+        RemapEvents.endClassLoad(event, name, bytes.length);
+        return new ClassData(name, this, bytes);
     }
 
     public void close() throws IOException {
-        jarFile.close();
+        try {
+            archive.close();
+        } finally {
+            if (jarFile != null) {
+                jarFile.close();
+            }
+        }
     }
 }
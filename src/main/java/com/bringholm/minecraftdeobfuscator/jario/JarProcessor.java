@@ -0,0 +1,103 @@
+package com.bringholm.minecraftdeobfuscator.jario;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs every class in a jar through a {@link ClassTransformer} and writes the result, together with the resources,
+ * to a {@link JarWriter}. When given an executor the classes are loaded and transformed concurrently, but they are
+ * always written in the order of the original jar, so the output is the same no matter how many threads are used.
+ */
+public class JarProcessor {
+    // How many entries per thread may be loaded ahead of the one that is currently being written.
+    private static final int ENTRIES_AHEAD_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final int threads;
+
+    /**
+     * @param executor the executor to run the transformations on, or null to run them on the calling thread
+     * @param threads  the amount of threads used by the executor
+     */
+    public JarProcessor(ExecutorService executor, int threads) {
+        this.executor = executor;
+        this.threads = threads;
+    }
+
+    public void process(JarLoader loader, JarWriter writer, ClassTransformer transformer) throws IOException {
+        process(loader.getEntries(), loader::loadElement, writer, transformer);
+    }
+
+    /**
+     * Processes the entries as loaded by the element loader, which allows some of them to be taken from elsewhere
+     * than the jar they are listed in.
+     */
+    public void process(List<ZipArchive.Entry> entries, ElementLoader elementLoader, JarWriter writer, ClassTransformer transformer) throws IOException {
+        if (executor == null) {
+            for (ZipArchive.Entry entry : entries) {
+                writer.write(transform(elementLoader.load(entry), transformer));
+            }
+            return;
+        }
+        Deque<Future<ElementData>> pending = new ArrayDeque<>();
+        try {
+            for (ZipArchive.Entry entry : entries) {
+                pending.add(executor.submit(() -> transform(elementLoader.load(entry), transformer)));
+                if (pending.size() >= threads * ENTRIES_AHEAD_PER_THREAD) {
+                    writer.write(getResult(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writer.write(getResult(pending.poll()));
+            }
+        } finally {
+            for (Future<ElementData> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private ElementData transform(ElementData data, ClassTransformer transformer) throws IOException {
+        if (data instanceof ClassData) {
+            transformer.transform((ClassData) data);
+        }
+        return data;
+    }
+
+    private ElementData getResult(Future<ElementData> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while transforming jar", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    public interface ElementLoader {
+        /**
+         * Loads the entry, as either {@link ClassData} to be transformed or {@link ResourceData} to be copied.
+         */
+        ElementData load(ZipArchive.Entry entry) throws IOException;
+    }
+
+    public interface ClassTransformer {
+        /**
+         * Transforms the class, replacing its bytecode if it should be changed. This may be called from several
+         * threads at once.
+         */
+        void transform(ClassData data) throws IOException;
+    }
+}
@@ -1,39 +1,419 @@
 package com.bringholm.minecraftdeobfuscator.jario;
 
 import com.bringholm.minecraftdeobfuscator.Mappings;
+import com.bringholm.minecraftdeobfuscator.util.CpuClock;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
 
+/**
+ * Writes the jar file itself rather than going through a JarOutputStream, so that the entries can be compressed
+ * on several threads at once. Each entry is deflated into its own buffer by the executor, and the writer then
+ * only has to write the local headers, the compressed data and the central directory in the right order.
+ */
 public class JarWriter implements AutoCloseable {
-    private JarOutputStream outputStream;
+    /**
+     * Stores the entries without compressing them.
+     */
+    public static final int STORED = 0;
+    // How many entries per thread may be compressed ahead of the one that is currently being written.
+    private static final int ENTRIES_AHEAD_PER_THREAD = 4;
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    // Bit 11 of the general purpose flags marks the name as UTF-8, which is what JarOutputStream uses as well
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+    private OutputStream outputStream;
     private Mappings mappings;
+    private ExecutorService executor;
+    private int threads;
+    private int compressionLevel;
+    private long classTime = System.currentTimeMillis();
+    private long offset;
+    private Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+    private List<CompressedEntry> writtenEntries = new ArrayList<>();
+    private Set<String> names = new HashSet<>();
+    private int classes;
+    private long bytesIn;
+    private boolean timed;
+    // The time spent compressing and writing the entries, summed up over the threads that did it
+    private final LongAdder writeTime = new LongAdder();
+    private final LongAdder writeCpuTime = new LongAdder();
 
     public JarWriter(File file, Mappings mappings) throws IOException {
-        this.outputStream = new JarOutputStream(new FileOutputStream(file));
+        this(file, mappings, null, 1, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param executor         the executor to compress the entries on, or null to compress them on the writing thread
+     * @param threads          the amount of threads used by the executor
+     * @param compressionLevel the deflate level (0-9, or -1 for the default), where {@link #STORED} doesn't compress
+     *                         the entries at all
+     */
+    public JarWriter(File file, Mappings mappings, ExecutorService executor, int threads, int compressionLevel) throws IOException {
+        this(new FileOutputStream(file), mappings, executor, threads, compressionLevel);
+    }
+
+    /**
+     * Writes the jar to the stream, which is closed together with the writer.
+     *
+     * @see #JarWriter(File, Mappings, ExecutorService, int, int)
+     */
+    public JarWriter(OutputStream outputStream, Mappings mappings, ExecutorService executor, int threads, int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        this.outputStream = new BufferedOutputStream(outputStream, 1 << 16);
         this.mappings = mappings;
+        this.executor = executor;
+        this.threads = threads;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets whether to measure the time spent compressing and writing the entries, for {@link #getWriteTime()} and
+     * {@link #getWriteCpuTime()}. This should be set before anything is written.
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
     }
 
     public void write(ElementData data) throws IOException {
+        String name;
+        byte[] bytes;
+        long time;
         if (data instanceof ResourceData) {
             ResourceData resourceData = (ResourceData) data;
-            outputStream.putNextEntry(resourceData.getEntry());
-            outputStream.write(resourceData.getData());
+            ZipArchive.Entry rawEntry = resourceData.getRawEntry();
+            if (rawEntry != null && canCopyRaw(rawEntry)) {
+                if (!names.add(rawEntry.getName())) {
+                    throw new ZipException("duplicate entry: " + rawEntry.getName());
+                }
+                CompressedEntry entry = new CompressedEntry(rawEntry, resourceData.getRawData());
+                bytesIn += entry.size;
+                if (executor == null) {
+                    writeEntry(entry);
+                } else {
+                    // This still has to wait for the entries before it to be compressed
+                    pending.add(CompletableFuture.completedFuture(entry));
+                    writeAhead();
+                }
+                return;
+            }
+            name = resourceData.getEntry().getName();
+            bytes = resourceData.getData();
+            time = resourceData.getEntry().getTime() == -1 ? classTime : resourceData.getEntry().getTime();
         } else {
             ClassData classData = (ClassData) data;
-            String name = mappings.getClassName(classData.getInternalName());
-            JarEntry jarEntry = new JarEntry(name + ".class");
-            jarEntry.setSize(classData.getBytecode().length);
-            outputStream.putNextEntry(jarEntry);
-            outputStream.write(classData.getBytecode());
+            name = mappings.getClassName(classData.getInternalName()) + ".class";
+            bytes = classData.getBytecode();
+            time = classTime;
+            classes++;
+        }
+        if (!names.add(name)) {
+            throw new ZipException("duplicate entry: " + name);
         }
-        outputStream.closeEntry();
+        bytesIn += bytes.length;
+        if (executor == null) {
+            writeEntry(compress(name, bytes, time));
+            return;
+        }
+        pending.add(executor.submit(() -> compress(name, bytes, time)));
+        writeAhead();
+    }
+
+    /**
+     * Writes the oldest pending entries until there are fewer of them than may be compressed ahead of the writer,
+     * so the entries waiting to be written, raw ones included, don't pile up in memory.
+     */
+    private void writeAhead() throws IOException {
+        while (pending.size() >= threads * ENTRIES_AHEAD_PER_THREAD) {
+            writeEntry(getResult(pending.poll()));
+        }
+    }
+
+    private boolean canCopyRaw(ZipArchive.Entry entry) {
+        // Jars that are meant to be stored shouldn't contain deflated entries just because they were deflated in the input
+        return entry.getMethod() != ZipArchive.METHOD_DEFLATED || compressionLevel != STORED;
+    }
+
+    private CompressedEntry compress(String name, byte[] bytes, long time) {
+        if (!timed) {
+            return deflate(name, bytes, time);
+        }
+        long startTime = System.nanoTime();
+        long startCpuTime = CpuClock.threadTime();
+        try {
+            return deflate(name, bytes, time);
+        } finally {
+            recordTime(startTime, startCpuTime);
+        }
+    }
+
+    private CompressedEntry deflate(String name, byte[] bytes, long time) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if (compressionLevel == STORED || name.endsWith("/")) {
+            return new CompressedEntry(name, METHOD_STORED, crc.getValue(), bytes.length, bytes, bytes.length, time);
+        }
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            deflater = new Deflater(compressionLevel, true);
+            DEFLATERS.set(deflater);
+        } else {
+            deflater.reset();
+            deflater.setLevel(compressionLevel);
+        }
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+        return new CompressedEntry(name, METHOD_DEFLATED, crc.getValue(), bytes.length, compressed.toByteArray(), compressed.size(), time);
+    }
+
+    private void recordTime(long startTime, long startCpuTime) {
+        writeTime.add(System.nanoTime() - startTime);
+        writeCpuTime.add(CpuClock.elapsed(startCpuTime, CpuClock.threadTime()));
+    }
+
+    private void writeEntry(CompressedEntry entry) throws IOException {
+        if (!timed) {
+            writeLocalEntry(entry);
+            return;
+        }
+        long startTime = System.nanoTime();
+        long startCpuTime = CpuClock.threadTime();
+        try {
+            writeLocalEntry(entry);
+        } finally {
+            recordTime(startTime, startCpuTime);
+        }
+    }
+
+    private void writeLocalEntry(CompressedEntry entry) throws IOException {
+        if (offset > MAX_SIZE || entry.compressedSize > MAX_SIZE || entry.size > MAX_SIZE) {
+            throw new ZipException("Jar is too large, zip64 is not supported");
+        }
+        entry.offset = offset;
+        writeInt(0x04034B50);
+        writeShort(entry.getVersionNeeded());
+        writeShort(FLAG_UTF8);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt((int) entry.crc);
+        writeInt((int) entry.compressedSize);
+        writeInt((int) entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);
+        write(entry.name);
+        outputStream.write(entry.data);
+        offset += entry.compressedSize;
+        // The data isn't needed for the central directory
+        entry.data = null;
+        writtenEntries.add(entry);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        if (writtenEntries.size() > MAX_ENTRIES) {
+            throw new ZipException("Jar has too many entries, zip64 is not supported");
+        }
+        long start = offset;
+        for (CompressedEntry entry : writtenEntries) {
+            writeInt(0x02014B50);
+            writeShort(20);
+            writeShort(entry.getVersionNeeded());
+            writeShort(FLAG_UTF8);
+            writeShort(entry.method);
+            writeInt(entry.dosTime);
+            writeInt((int) entry.crc);
+            writeInt((int) entry.compressedSize);
+            writeInt((int) entry.size);
+            writeShort(entry.name.length);
+            // Extra field, comment, disk number, internal and external attributes
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt((int) entry.offset);
+            write(entry.name);
+        }
+        if (offset > MAX_SIZE) {
+            throw new ZipException("Jar is too large, zip64 is not supported");
+        }
+        long size = offset - start;
+        writeInt(0x06054B50);
+        writeShort(0);
+        writeShort(0);
+        writeShort(writtenEntries.size());
+        writeShort(writtenEntries.size());
+        writeInt((int) size);
+        writeInt((int) start);
+        writeShort(0);
+    }
+
+    private CompressedEntry getResult(Future<CompressedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing jar", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress jar entry", e.getCause());
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        outputStream.write(value & 0xFF);
+        outputStream.write((value >>> 8) & 0xFF);
+        offset += 2;
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value & 0xFFFF);
+        writeShort(value >>> 16);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        outputStream.write(bytes);
+        offset += bytes.length;
     }
 
     public void close() throws IOException {
-        outputStream.close();
+        try {
+            while (!pending.isEmpty()) {
+                writeEntry(getResult(pending.poll()));
+            }
+            long startTime = timed ? System.nanoTime() : 0;
+            long startCpuTime = timed ? CpuClock.threadTime() : 0;
+            writeCentralDirectory();
+            outputStream.flush();
+            if (timed) {
+                recordTime(startTime, startCpuTime);
+            }
+        } finally {
+            for (Future<CompressedEntry> future : pending) {
+                future.cancel(true);
+            }
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Gets how many entries have been given to the writer, but haven't been written yet.
+     */
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Gets the amount of classes written so far.
+     */
+    public int getClassCount() {
+        return classes;
+    }
+
+    /**
+     * Gets the uncompressed size of the entries written so far.
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Gets the size of the jar written so far, which is its full size once the writer is closed.
+     */
+    public long getBytesWritten() {
+        return offset;
+    }
+
+    /**
+     * Gets the time spent compressing and writing the entries, summed up over all of the threads, in nanoseconds.
+     * This is only measured if the writer is {@link #setTimed(boolean) timed}.
+     */
+    public long getWriteTime() {
+        return writeTime.sum();
+    }
+
+    /**
+     * Gets the CPU time spent compressing and writing the entries, summed up over all of the threads, in
+     * nanoseconds. This is -1 if the CPU time can't be measured.
+     */
+    public long getWriteCpuTime() {
+        return CpuClock.threadTime() == -1 ? -1 : writeCpuTime.sum();
+    }
+
+    private static int toDosTime(long time) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (dateTime.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (dateTime.getYear() - 1980) << 25 | dateTime.getMonthValue() << 21 | dateTime.getDayOfMonth() << 16 |
+                dateTime.getHour() << 11 | dateTime.getMinute() << 5 | dateTime.getSecond() >> 1;
+    }
+
+    private static class CompressedEntry {
+        private final byte[] name;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final int dosTime;
+        private byte[] data;
+        private long offset;
+
+        private CompressedEntry(String name, int method, long crc, long size, byte[] data, long compressedSize, long time) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.compressedSize = compressedSize;
+            this.dosTime = toDosTime(time);
+        }
+
+        private CompressedEntry(ZipArchive.Entry entry, byte[] rawData) {
+            this.name = entry.getName().getBytes(StandardCharsets.UTF_8);
+            this.method = entry.getMethod();
+            this.crc = entry.getCrc();
+            this.size = entry.getSize();
+            this.data = rawData;
+            this.compressedSize = entry.getCompressedSize();
+            this.dosTime = entry.getDosTime();
+        }
+
+        private int getVersionNeeded() {
+            return method == METHOD_DEFLATED ? 20 : 10;
+        }
     }
 }
@@ -1,21 +1,52 @@
 package com.bringholm.minecraftdeobfuscator.jario;
 
+import java.io.IOException;
 import java.util.jar.JarEntry;
 
 public class ResourceData implements ElementData {
     private byte[] data;
     private JarEntry entry;
+    private ZipArchive.Entry rawEntry;
+    private byte[] rawData;
 
     public ResourceData(byte[] data, JarEntry entry) {
         this.data = data;
         this.entry = entry;
     }
 
-    public byte[] getData() {
+    /**
+     * Creates ResourceData holding the still compressed bytes of an entry, which the {@link JarWriter} can
+     * copy as they are. The data is only inflated if it is actually requested.
+     */
+    public ResourceData(ZipArchive.Entry rawEntry, byte[] rawData) {
+        this.rawEntry = rawEntry;
+        this.rawData = rawData;
+        this.entry = new JarEntry(rawEntry.getName());
+        this.entry.setTime(ZipArchive.fromDosTime(rawEntry.getDosTime()));
+    }
+
+    public byte[] getData() throws IOException {
+        if (data == null) {
+            data = ZipArchive.inflate(rawEntry, rawData);
+        }
         return data;
     }
 
     public JarEntry getEntry() {
         return entry;
     }
+
+    /**
+     * Gets the central directory entry this was read from, or null if this wasn't read as a raw entry.
+     */
+    public ZipArchive.Entry getRawEntry() {
+        return rawEntry;
+    }
+
+    /**
+     * Gets the compressed bytes of the entry, or null if this wasn't read as a raw entry.
+     */
+    public byte[] getRawData() {
+        return rawData;
+    }
 }
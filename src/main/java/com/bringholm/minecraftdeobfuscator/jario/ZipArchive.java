@@ -0,0 +1,370 @@
+package com.bringholm.minecraftdeobfuscator.jario;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a jar straight from its central directory, which gives access to the still compressed
+ * bytes of each entry. These can be copied to another jar without inflating and deflating them again.
+ *
+ * The jar can either be read through positional reads on a FileChannel, or be memory mapped as a whole. When it
+ * is mapped, the entries are served as slices of the mapped buffer, so looking up and reading an entry doesn't
+ * need any system calls. A jar that is already in memory is read the same way as a mapped one.
+ */
+public class ZipArchive implements AutoCloseable {
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054B50;
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014B50;
+    private static final int LOCAL_FILE_HEADER = 0x04034B50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    // The end of central directory record may be followed by a comment of up to 0xFFFF bytes
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    // The compressed input is copied into these, since Inflater can only read from arrays on Java 8
+    private static final ThreadLocal<byte[]> INPUT_BUFFERS = new ThreadLocal<>();
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<>();
+
+    private FileChannel channel;
+    // The whole jar, when it is memory mapped or was given in memory
+    private ByteBuffer buffer;
+    private long fileSize;
+    private List<Entry> entries;
+    private Map<String, Entry> entriesByName;
+
+    public ZipArchive(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param memoryMapped whether to memory map the jar, which is ignored for jars that are too large to be mapped
+     */
+    public ZipArchive(File file, boolean memoryMapped) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            if (memoryMapped && fileSize <= Integer.MAX_VALUE) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+                // The mapping stays valid after the channel is closed
+                channel.close();
+                this.channel = null;
+            }
+            this.entries = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        indexEntries();
+    }
+
+    /**
+     * Reads a jar that is already in memory, from the position to the limit of the buffer. The buffer must not be
+     * changed while the archive is in use.
+     */
+    public ZipArchive(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.slice();
+        this.fileSize = this.buffer.capacity();
+        this.entries = Collections.unmodifiableList(readCentralDirectory());
+        indexEntries();
+    }
+
+    private void indexEntries() {
+        this.entriesByName = new HashMap<>(entries.size() * 4 / 3 + 1);
+        for (Entry entry : entries) {
+            entriesByName.putIfAbsent(entry.name, entry);
+        }
+    }
+
+    public boolean isMemoryMapped() {
+        return buffer instanceof MappedByteBuffer;
+    }
+
+    /**
+     * Gets the entry with the name, or null if the jar doesn't contain it.
+     */
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Gets the entries in the order they are stored in the central directory, which is the same order
+     * that {@link java.util.zip.ZipFile#entries()} uses.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads the compressed bytes of the entry, exactly as they are stored in the jar.
+     */
+    public byte[] readRawData(Entry entry) throws IOException {
+        ByteBuffer buffer = getRawBuffer(entry);
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Gets the compressed bytes of the entry. If the jar is memory mapped this is a slice of the mapping, so
+     * nothing is copied.
+     */
+    public ByteBuffer getRawBuffer(Entry entry) throws IOException {
+        long dataOffset = entry.dataOffset;
+        if (dataOffset == -1) {
+            ByteBuffer header = read(entry.localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_FILE_HEADER) {
+                throw new ZipException("Invalid local file header for " + entry.getName());
+            }
+            // The local extra field doesn't need to be the same length as the one in the central directory
+            dataOffset = entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + getUnsignedShort(header, 26) + getUnsignedShort(header, 28);
+            entry.dataOffset = dataOffset;
+        }
+        return read(dataOffset, (int) entry.compressedSize);
+    }
+
+    /**
+     * Reads and inflates the bytes of the entry. The result is allocated with the exact size of the entry, while
+     * the Inflater and the buffer for the compressed input are reused by each thread.
+     */
+    public byte[] readData(Entry entry) throws IOException {
+        if (entry.method == METHOD_STORED) {
+            return readRawData(entry);
+        }
+        ByteBuffer buffer = getRawBuffer(entry);
+        if (entry.method != METHOD_DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        int length = buffer.remaining();
+        byte[] input;
+        if (buffer.hasArray()) {
+            input = buffer.array();
+        } else {
+            input = INPUT_BUFFERS.get();
+            if (input == null || input.length < length) {
+                input = new byte[Math.max(length, 1 << 16)];
+                INPUT_BUFFERS.set(input);
+            }
+            buffer.get(input, 0, length);
+        }
+        Inflater inflater = INFLATERS.get();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+            INFLATERS.set(inflater);
+        } else {
+            inflater.reset();
+        }
+        return inflate(entry, inflater, input, buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0, length);
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(fileSize - tailSize, tailSize);
+        int endPosition = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                endPosition = i;
+                break;
+            }
+        }
+        if (endPosition == -1) {
+            throw new ZipException("Could not find the end of the central directory");
+        }
+        int entryCount = getUnsignedShort(tail, endPosition + 10);
+        long directorySize = getUnsignedInt(tail, endPosition + 12);
+        long directoryOffset = getUnsignedInt(tail, endPosition + 16);
+        if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 jars are not supported");
+        }
+        return parseCentralDirectory(read(directoryOffset, (int) directorySize), entryCount);
+    }
+
+    static List<Entry> parseCentralDirectory(ByteBuffer directory, int entryCount) throws ZipException {
+        List<Entry> entries = new ArrayList<>(entryCount);
+        int position = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (directory.getInt(position) != CENTRAL_DIRECTORY_HEADER) {
+                throw new ZipException("Invalid central directory header at entry " + i);
+            }
+            int method = getUnsignedShort(directory, position + 10);
+            int dosTime = directory.getInt(position + 12);
+            long crc = getUnsignedInt(directory, position + 16);
+            long compressedSize = getUnsignedInt(directory, position + 20);
+            long size = getUnsignedInt(directory, position + 24);
+            int nameLength = getUnsignedShort(directory, position + 28);
+            int extraLength = getUnsignedShort(directory, position + 30);
+            int commentLength = getUnsignedShort(directory, position + 32);
+            long localHeaderOffset = getUnsignedInt(directory, position + 42);
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                throw new ZipException("Zip64 jars are not supported");
+            }
+            byte[] name = new byte[nameLength];
+            for (int j = 0; j < nameLength; j++) {
+                name[j] = directory.get(position + 46 + j);
+            }
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, dosTime, crc, compressedSize, size, localHeaderOffset));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (buffer != null) {
+            if (position < 0 || position + length > buffer.capacity()) {
+                throw new ZipException("Unexpected end of jar");
+            }
+            // Each read gets its own view of the mapping, as the buffer is shared between threads
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) position);
+            slice.limit((int) position + length);
+            return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new ZipException("Unexpected end of jar");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int getUnsignedShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    private static long getUnsignedInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Inflates the raw bytes of an entry read by {@link #readRawData(Entry)}.
+     */
+    static byte[] inflate(Entry entry, byte[] rawData) throws IOException {
+        if (entry.method == METHOD_STORED) {
+            return rawData;
+        }
+        if (entry.method != METHOD_DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            return inflate(entry, inflater, rawData, 0, rawData.length);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] inflate(Entry entry, Inflater inflater, byte[] input, int offset, int length) throws IOException {
+        try {
+            inflater.setInput(input, offset, length);
+            byte[] data = new byte[(int) entry.size];
+            int inflatedLength = 0;
+            while (inflatedLength < data.length) {
+                int inflated = inflater.inflate(data, inflatedLength, data.length - inflatedLength);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflatedLength += inflated;
+            }
+            if (inflatedLength != data.length) {
+                throw new ZipException("Invalid size of inflated entry " + entry.name);
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid deflate data for " + entry.name + ": " + e.getMessage());
+        }
+    }
+
+    static long fromDosTime(int dosTime) {
+        LocalDateTime dateTime;
+        try {
+            dateTime = LocalDateTime.of(((dosTime >>> 25) & 0x7F) + 1980, (dosTime >>> 21) & 0x0F,
+                    (dosTime >>> 16) & 0x1F, (dosTime >>> 11) & 0x1F, (dosTime >>> 5) & 0x3F, (dosTime << 1) & 0x3E);
+        } catch (DateTimeException e) {
+            // Some tools write zeroed or otherwise invalid times, which can't be represented
+            dateTime = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final int dosTime;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        // Where the data starts, which is only known once the local header has been read
+        private volatile long dataOffset = -1;
+
+        private Entry(String name, int method, int dosTime, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * Gets the modification time in the MS-DOS format it is stored in.
+         */
+        public int getDosTime() {
+            return dosTime;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "ZipArchive.Entry{name=" + name + "}";
+        }
+    }
+}
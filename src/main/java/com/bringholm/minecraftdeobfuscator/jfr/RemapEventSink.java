@@ -0,0 +1,24 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+/**
+ * Records the events emitted through {@link RemapEvents}. The Flight Recorder implementation is built from
+ * src/jfr/java, which is only compiled on JDKs that have the jdk.jfr module, so nothing in src/main/java may
+ * refer to it directly.
+ */
+interface RemapEventSink {
+    Object beginClassLoad();
+
+    void endClassLoad(Object token, String className, int size);
+
+    Object beginClassRemap();
+
+    void endClassRemap(Object token, String className, int size, int remappedSize);
+
+    Object beginHierarchyResolution();
+
+    void endHierarchyResolution(Object token, String className, String memberName, String descriptor);
+
+    Object beginClassAnalysis();
+
+    void endClassAnalysis(Object token, String analysis, String className, int size, int found);
+}
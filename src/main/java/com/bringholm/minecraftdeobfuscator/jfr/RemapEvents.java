@@ -0,0 +1,82 @@
+package com.bringholm.minecraftdeobfuscator.jfr;
+
+/**
+ * Emits Java Flight Recorder events for the classes that are loaded, remapped and analyzed, and for the members
+ * whose names are resolved through the hierarchy, so a recording shows which classes a slow jar spends its time on.
+ * <p>
+ * The events are off unless {@link #enable()} is called, and each begin method then only checks a static field and
+ * returns null. The event classes need the jdk.jfr module, so they live in src/jfr/java, which the build only
+ * compiles on JDK 11 or later (or on 8u262 and later with -Pjfr). They are loaded by name once the events are
+ * enabled, so the rest of the code still builds and runs without Flight Recorder. The objects returned by the begin
+ * methods are the events, and have to be passed to the matching end method on the same thread.
+ */
+public final class RemapEvents {
+    private static final String SINK_CLASS = "com.bringholm.minecraftdeobfuscator.jfr.FlightRecorderEventSink";
+    // Only set before the jar is processed, the threads remapping it are started after that
+    private static RemapEventSink sink;
+
+    private RemapEvents() {
+    }
+
+    /**
+     * Enables the events, which are then recorded by any Flight Recorder recording that has them enabled. Returns
+     * false if this JVM doesn't have Flight Recorder, or the events weren't built.
+     */
+    public static boolean enable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            sink = (RemapEventSink) Class.forName(SINK_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean isEnabled() {
+        return sink != null;
+    }
+
+    public static Object beginClassLoad() {
+        return sink == null ? null : sink.beginClassLoad();
+    }
+
+    public static void endClassLoad(Object token, String className, int size) {
+        if (token != null) {
+            sink.endClassLoad(token, className, size);
+        }
+    }
+
+    public static Object beginClassRemap() {
+        return sink == null ? null : sink.beginClassRemap();
+    }
+
+    public static void endClassRemap(Object token, String className, int size, int remappedSize) {
+        if (token != null) {
+            sink.endClassRemap(token, className, size, remappedSize);
+        }
+    }
+
+    public static Object beginHierarchyResolution() {
+        return sink == null ? null : sink.beginHierarchyResolution();
+    }
+
+    public static void endHierarchyResolution(Object token, String className, String memberName, String descriptor) {
+        if (token != null) {
+            sink.endHierarchyResolution(token, className, memberName, descriptor);
+        }
+    }
+
+    public static Object beginClassAnalysis() {
+        return sink == null ? null : sink.beginClassAnalysis();
+    }
+
+    /**
+     * @param analysis what the class was analyzed for
+     * @param found    how many bridge methods or SwitchMap arrays were found in the class
+     */
+    public static void endClassAnalysis(Object token, String analysis, String className, int size, int found) {
+        if (token != null) {
+            sink.endClassAnalysis(token, analysis, className, size, found);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.bringholm.minecraftdeobfuscator.remapper;
+
+import com.bringholm.minecraftdeobfuscator.jario.ClassData;
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jfr.RemapEvents;
+import com.google.common.cache.CacheStats;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The bridge methods of each class, and the methods they bridge to. A class is analyzed the first time one of its
+ * methods is looked up: every synthetic method is scanned once, and each method of the class that it calls (and that
+ * has another name) is recorded as bridged to by it. If several synthetic methods call the same method, the first one
+ * in the class wins.
+ *
+ * @see MemberRemapper#getBridgeMethodName(String, String, String)
+ */
+class BridgeMethodIndex {
+    static final int SYNTHETIC = 0x00001000;
+    // 0x40 is also used for volatile on fields, but we
+    // only check methods using it.
+    static final int BRIDGE = 0x00000040;
+
+    private static final ClassBridges NO_BRIDGES = new ClassBridges();
+
+    private final Map<String, ClassBridges> classes = new ConcurrentHashMap<>();
+    private final JarLoader loader;
+    private final Remapper classRemapper;
+    private final boolean recordStats;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param recordStats whether to count the hits and misses for {@link #getStats()}
+     */
+    BridgeMethodIndex(JarLoader loader, Remapper classRemapper, boolean recordStats) {
+        this.loader = loader;
+        this.classRemapper = classRemapper;
+        this.recordStats = recordStats;
+    }
+
+    /**
+     * Gets the name of the bridge method that calls the method, or null if there is none.
+     */
+    String getBridgeName(String owner, String name, String desc) {
+        Map<String, String> descs = getBridges(owner).bridgeNames.get(name);
+        return descs == null ? null : descs.get(desc);
+    }
+
+    /**
+     * Gets whether the method is a bridge that is missing the bridge modifier, which should be added so decompilers
+     * hide it.
+     */
+    boolean isMissingBridgeModifier(String owner, String name, String desc) {
+        Set<String> descs = getBridges(owner).missingModifiers.get(name);
+        return descs != null && descs.contains(desc);
+    }
+
+    private ClassBridges getBridges(String owner) {
+        ClassBridges bridges = classes.get(owner);
+        if (bridges == null) {
+            if (recordStats) {
+                misses.increment();
+            }
+            // Not computed inside of the map, since loading the class can take a while
+            bridges = analyze(owner);
+            classes.putIfAbsent(owner, bridges);
+        } else if (recordStats) {
+            hits.increment();
+        }
+        return bridges;
+    }
+
+    /**
+     * Gets how often the bridges of a class were already analyzed when they were looked up, if that is counted.
+     */
+    CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, 0);
+    }
+
+    private ClassBridges analyze(String owner) {
+        if (!classRemapper.mapType(owner).startsWith("net/minecraft/server/")) {
+            return NO_BRIDGES;
+        }
+        ClassData data = loader.getDataFor(owner);
+        if (data == null || !hasSyntheticMethods(data)) {
+            return NO_BRIDGES;
+        }
+        Object event = RemapEvents.beginClassAnalysis();
+        ClassBridges bridges = new ClassBridges();
+        Map<String, Map<String, MethodNode>> bridgeNodes = new HashMap<>();
+        //noinspection unchecked
+        for (MethodNode methodNode : (List<MethodNode>) data.getNode().methods) {
+            if (!isSynthetic(methodNode.access)) {
+                continue;
+            }
+            for (AbstractInsnNode insnNode = methodNode.instructions.getFirst(); insnNode != null; insnNode = insnNode.getNext()) {
+                if (insnNode instanceof MethodInsnNode) {
+                    MethodInsnNode methodInsn = (MethodInsnNode) insnNode;
+                    if (methodInsn.owner.equals(owner) && !methodInsn.name.equals(methodNode.name) && data.getMethod(methodInsn.name, methodInsn.desc) != null) {
+                        bridgeNodes.computeIfAbsent(methodInsn.name, key -> new HashMap<>()).putIfAbsent(methodInsn.desc, methodNode);
+                    }
+                }
+            }
+        }
+        int found = 0;
+        for (Map.Entry<String, Map<String, MethodNode>> entry : bridgeNodes.entrySet()) {
+            for (Map.Entry<String, MethodNode> descEntry : entry.getValue().entrySet()) {
+                found++;
+                MethodNode bridgeNode = descEntry.getValue();
+                bridges.bridgeNames.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(descEntry.getKey(), bridgeNode.name);
+                // Mojang's bridge methods only have the synthetic modifier. A method that is itself a bridge to another
+                // one is the actual bridge though, so the modifier isn't added to the methods it calls.
+                if ((bridgeNode.access & SYNTHETIC) == SYNTHETIC && (bridgeNode.access & BRIDGE) == 0
+                        && !isBridge(bridgeNodes, entry.getKey(), descEntry.getKey())) {
+                    bridges.missingModifiers.computeIfAbsent(bridgeNode.name, key -> new HashSet<>()).add(bridgeNode.desc);
+                }
+            }
+        }
+        RemapEvents.endClassAnalysis(event, "bridge methods", owner, data.getBytecode().length, found);
+        return bridges;
+    }
+
+    private static boolean isBridge(Map<String, Map<String, MethodNode>> bridgeNodes, String name, String desc) {
+        for (Map<String, MethodNode> descs : bridgeNodes.values()) {
+            for (MethodNode bridgeNode : descs.values()) {
+                if (bridgeNode.name.equals(name) && bridgeNode.desc.equals(desc)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the class has any methods that could be bridges, without parsing the code of the class.
+     */
+    private static boolean hasSyntheticMethods(ClassData data) {
+        //noinspection unchecked
+        for (MethodNode methodNode : (List<MethodNode>) data.getMemberNode().methods) {
+            if (isSynthetic(methodNode.access)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSynthetic(int access) {
+        return (access & SYNTHETIC) == SYNTHETIC || (access & BRIDGE) == BRIDGE;
+    }
+
+    private static class ClassBridges {
+        // Target name -> target descriptor -> bridge name
+        private final Map<String, Map<String, String>> bridgeNames = new HashMap<>();
+        // Bridge name -> bridge descriptors
+        private final Map<String, Set<String>> missingModifiers = new HashMap<>();
+    }
+}
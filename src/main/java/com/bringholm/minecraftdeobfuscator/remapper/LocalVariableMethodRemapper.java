@@ -1,27 +1,45 @@
 package com.bringholm.minecraftdeobfuscator.remapper;
 
-import com.bringholm.minecraftdeobfuscator.MinecraftDeobfuscator;
 import com.bringholm.minecraftdeobfuscator.util.LocalVariableNameHelper;
-import com.google.common.collect.Maps;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.commons.MethodRemapper;
 import org.objectweb.asm.commons.Remapper;
 
-import java.util.Map;
-
 public class LocalVariableMethodRemapper extends MethodRemapper {
-    private Map<String, Integer> indices = Maps.newHashMap();
+    private LocalVariableNameHelper.Indices indices;
+    private Remapper classRemapper;
+    private boolean printNames;
+
     public LocalVariableMethodRemapper(MethodVisitor mv, Remapper remapper) {
+        this(mv, remapper, remapper, false, new LocalVariableNameHelper.Indices());
+    }
+
+    /**
+     * @param classRemapper used to resolve the deobfuscated type of each local variable, which the name is based on
+     * @param printNames    whether to print the deobfuscated names of the local variables
+     * @param indices       the counts of the local variable names, which are reset for this method. They can be shared
+     *                      by the methods of a class, since those are visited one at a time
+     */
+    public LocalVariableMethodRemapper(MethodVisitor mv, Remapper remapper, Remapper classRemapper, boolean printNames,
+                                       LocalVariableNameHelper.Indices indices) {
         super(mv, remapper);
+        this.classRemapper = classRemapper;
+        this.printNames = printNames;
+        this.indices = indices;
+        indices.reset();
     }
 
     @Override
     public void visitLocalVariable(String name, String desc, String signature, Label start, Label end, int index) {
-        String newName = LocalVariableNameHelper.getVariableName(name, desc, this.indices);
-        if (MinecraftDeobfuscator.options.has("debug-print") && !newName.equals(name)) {
-            System.out.println("Deobfuscated local variable " + newName + "!");
+        // Most variables keep their name, and those don't need their descriptor remapped
+        if (LocalVariableNameHelper.isSnowman(name)) {
+            String newName = LocalVariableNameHelper.getVariableName(name, classRemapper.mapDesc(desc), this.indices);
+            if (printNames) {
+                System.out.println("Deobfuscated local variable " + newName + "!");
+            }
+            name = newName;
         }
-        super.visitLocalVariable(newName, desc, signature, start, end, index);
+        super.visitLocalVariable(name, desc, signature, start, end, index);
     }
 }
@@ -4,20 +4,28 @@ import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.commons.ClassRemapper;
 import org.objectweb.asm.commons.Remapper;
 
 public class MemberPrinterClassRemapper extends MemberClassRemapper {
 
     private String className;
+    private String printedClassName;
+    private Remapper classRemapper;
 
     public MemberPrinterClassRemapper(ClassVisitor cv, MemberRemapper remapper, JarLoader loader) {
         super(cv, remapper, loader);
+        this.classRemapper = remapper.getClassRemapper();
+    }
+
+    @Override
+    protected boolean isPrinting() {
+        return true;
     }
 
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
         className = name;
+        printedClassName = classRemapper.mapType(name);
         super.visit(version, access, name, signature, superName, interfaces);
     }
 
@@ -26,9 +34,9 @@ public class MemberPrinterClassRemapper extends MemberClassRemapper {
         String mappedName = remapper.mapFieldName(className, name, desc);
         if (!mappedName.equals(name)) {
             if (mappedName.startsWith("$SwitchMap$")) {
-                System.out.println("Deobfuscated Enum SwitchMap field " + className + "." + name + " to " + mappedName);
+                System.out.println("Deobfuscated Enum SwitchMap field " + printedClassName + "." + name + " to " + mappedName);
             } else {
-                System.out.println("Deobfuscated field " + className + "." + name + " to " + mappedName);
+                System.out.println("Deobfuscated field " + printedClassName + "." + name + " to " + mappedName);
             }
         }
         return super.visitField(access, name, desc, signature, value);
@@ -38,7 +46,7 @@ public class MemberPrinterClassRemapper extends MemberClassRemapper {
     public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
         String mappedName = remapper.mapMethodName(className, name, desc);
         if (!mappedName.equals(name)) {
-            System.out.println("Deobfuscated method " + className + "." + name + desc + " to " + mappedName);
+            System.out.println("Deobfuscated method " + printedClassName + "." + name + classRemapper.mapMethodDesc(desc) + " to " + mappedName);
         }
         return super.visitMethod(access, name, desc, signature, exceptions);
     }
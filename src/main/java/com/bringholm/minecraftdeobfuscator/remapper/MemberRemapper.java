@@ -1,99 +1,329 @@
 package com.bringholm.minecraftdeobfuscator.remapper;
 
-import com.bringholm.minecraftdeobfuscator.jario.ClassData;
+import com.bringholm.minecraftdeobfuscator.jario.ClassHierarchy;
 import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Sets;
-import org.objectweb.asm.Opcodes;
+import com.bringholm.minecraftdeobfuscator.jfr.RemapEvents;
+import com.bringholm.minecraftdeobfuscator.util.MemberTable;
+import com.google.common.cache.CacheStats;
+import org.objectweb.asm.commons.Remapper;
 import org.objectweb.asm.commons.SimpleRemapper;
-import org.objectweb.asm.tree.*;
 
-import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.lang.reflect.Modifier;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class MemberRemapper extends SimpleRemapper {
 
-    Set<String> addBridgeModifiers = Sets.newHashSet();
-    private static final int SYNTHETIC = 0x00001000;
-    // 0x40 is also used for volatile on fields, but we
-    // only check methods using it.
-    static final int BRIDGE = 0x00000040;
+    private ClassHierarchy hierarchy;
+    private Remapper classRemapper;
+    private BridgeMethodIndex bridgeIndex;
+    private SwitchMapIndex switchMapIndex;
+    // The mapped name of every reference that has a mapping
+    private final MemberTable<String> methodTable = new MemberTable<>();
+    private final MemberTable<String> fieldTable = new MemberTable<>();
+    // The references that don't have a mapping, filled in as they are looked up
+    private final MemberTable<String> unmappedMethods = new MemberTable<>();
+    private final MemberTable<String> unmappedFields = new MemberTable<>();
+    private long lookupTableBuildTime;
+    private final boolean recordStats;
+    private final LongAdder unmappedMethodHits = new LongAdder();
+    private final LongAdder unmappedMethodMisses = new LongAdder();
+    private final LongAdder unmappedFieldHits = new LongAdder();
+    private final LongAdder unmappedFieldMisses = new LongAdder();
+    private final LongAdder hierarchyResolutions = new LongAdder();
 
-    private LoadingCache<String, Boolean> switchMapCache = CacheBuilder.newBuilder().maximumSize(256L).build(new CacheLoader<String, Boolean>() {
-        @Override
-        public Boolean load(@Nonnull String key) throws Exception {
-            return isEnumSwitchMap(key);
-        }
-    });
-    private Cache<String, Optional<String>> bridgeMethodCache = CacheBuilder.newBuilder().maximumSize(512L).build();
-    private JarLoader loader;
+    /**
+     * Creates a MemberRemapper for a jar whose classes have already been remapped, so the owners and descriptors
+     * it is asked about can be looked up in the member mappings directly.
+     */
+    public MemberRemapper(Map mapping, JarLoader loader) throws IOException {
+        this(mapping, loader, new Remapper() {});
+    }
 
-    public MemberRemapper(Map mapping, JarLoader loader) {
+    /**
+     * Creates a MemberRemapper for a jar that still uses the obfuscated class names. The hierarchy is walked using
+     * the obfuscated names, while the member mappings (which use the deobfuscated names) are looked up by running
+     * the owner and descriptor through the class remapper first.
+     */
+    public MemberRemapper(Map mapping, JarLoader loader, Remapper classRemapper) throws IOException {
+        this(mapping, loader, classRemapper, false);
+    }
+
+    /**
+     * @param recordStats whether to count the cache hits and hierarchy lookups reported by
+     *                    {@link #getUnmappedMethodCacheStats()} and the like, which is only worth doing when they are
+     *                    written somewhere. They are all zero otherwise.
+     */
+    public MemberRemapper(Map mapping, JarLoader loader, Remapper classRemapper, boolean recordStats) throws IOException {
         super(mapping);
-        this.loader = loader;
+        this.hierarchy = loader.getHierarchy();
+        this.classRemapper = classRemapper;
+        this.recordStats = recordStats;
+        this.bridgeIndex = new BridgeMethodIndex(loader, classRemapper, recordStats);
+        this.switchMapIndex = SwitchMapIndex.build(loader, hierarchy, classRemapper, recordStats);
+        buildLookupTables();
+    }
+
+    public Remapper getClassRemapper() {
+        return classRemapper;
+    }
+
+    /**
+     * Gets the amount of (owner, name, descriptor) references that were resolved to a mapped name up front.
+     */
+    public int getLookupTableSize() {
+        return methodTable.size() + fieldTable.size();
+    }
+
+    /**
+     * Gets how long it took to build the lookup table, in milliseconds.
+     */
+    public long getLookupTableBuildTime() {
+        return lookupTableBuildTime;
+    }
+
+    /**
+     * Gets the amount of SwitchMap arrays that were found in the jar.
+     *
+     * @see SwitchMapIndex
+     */
+    public int getSwitchMapCount() {
+        return switchMapIndex.size();
+    }
+
+    /**
+     * Gets a description of every SwitchMap array that couldn't be renamed.
+     */
+    public List<String> getSwitchMapDiagnostics() {
+        return switchMapIndex.getDiagnostics();
+    }
+
+    /**
+     * Gets how often the methods that aren't in the lookup table had already been resolved when they were looked up.
+     */
+    public CacheStats getUnmappedMethodCacheStats() {
+        return new CacheStats(unmappedMethodHits.sum(), unmappedMethodMisses.sum(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Gets how often the fields that aren't in the lookup table had already been resolved when they were looked up.
+     * The SwitchMap names are only looked up for the fields that hadn't.
+     */
+    public CacheStats getUnmappedFieldCacheStats() {
+        return new CacheStats(unmappedFieldHits.sum(), unmappedFieldMisses.sum(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Gets how often the bridge methods of a class had already been analyzed when they were looked up.
+     */
+    public CacheStats getBridgeMethodCacheStats() {
+        return bridgeIndex.getStats();
+    }
+
+    /**
+     * Gets how many fields have been looked up in the SwitchMap index.
+     */
+    public long getSwitchMapLookups() {
+        return switchMapIndex.getLookups();
+    }
+
+    /**
+     * Gets how many classes have been visited while walking up the hierarchy to find where a member was declared.
+     */
+    public long getHierarchyResolutions() {
+        return hierarchyResolutions.sum();
+    }
+
+    /**
+     * Pushes every mapped member down to the classes that inherit it, so that any reference to a mapped member,
+     * no matter which subclass it goes through, is resolved by a single lookup. The names are resolved the same way
+     * they would be when looked up one by one, this only does it ahead of time for the members that are mapped on
+     * the class declaring them. A mapping can also be keyed on a class that only inherits the member, those are
+     * found when the reference is looked up, along with the bridge and SwitchMap names.
+     */
+    private void buildLookupTables() {
+        long startTime = System.currentTimeMillis();
+        for (ClassHierarchy.ClassInfo info : hierarchy.getClasses()) {
+            String mappedOwner = classRemapper.mapType(info.getName());
+            if (!mappedOwner.startsWith("net/minecraft/server/")) {
+                continue;
+            }
+            for (Map.Entry<String, Map<String, Integer>> entry : info.getMethods().entrySet()) {
+                String name = entry.getKey();
+                for (Map.Entry<String, Integer> descEntry : entry.getValue().entrySet()) {
+                    String desc = descEntry.getKey();
+                    if (map(mappedOwner + "." + name + classRemapper.mapMethodDesc(desc)) == null) {
+                        continue;
+                    }
+                    propagate(info, descEntry.getValue(), new HashSet<>(), subType -> {
+                        if (!methodTable.contains(subType.getName(), name, desc)) {
+                            String mappedName = resolveMethodName(subType.getName(), name, desc);
+                            if (mappedName != null) {
+                                methodTable.put(subType.getName(), name, desc, mappedName);
+                            }
+                        }
+                    });
+                }
+            }
+            for (Map.Entry<String, Map<String, Integer>> entry : info.getFields().entrySet()) {
+                String name = entry.getKey();
+                if (map(mappedOwner + "." + name) == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Integer> descEntry : entry.getValue().entrySet()) {
+                    String desc = descEntry.getKey();
+                    propagate(info, descEntry.getValue(), new HashSet<>(), subType -> {
+                        if (!fieldTable.contains(subType.getName(), name, desc)) {
+                            String mappedName = resolveFieldName(subType.getName(), name, desc);
+                            if (mappedName != null) {
+                                fieldTable.put(subType.getName(), name, desc, mappedName);
+                            }
+                        }
+                    });
+                }
+            }
+        }
+        lookupTableBuildTime = System.currentTimeMillis() - startTime;
+    }
+
+    private void propagate(ClassHierarchy.ClassInfo info, int access, Set<String> visited, Consumer<ClassHierarchy.ClassInfo> consumer) {
+        if (!visited.add(info.getName())) {
+            return;
+        }
+        consumer.accept(info);
+        // Private members are never inherited, so only references through the declaring class itself are mapped
+        if (!Modifier.isPrivate(access)) {
+            for (ClassHierarchy.ClassInfo subType : info.getSubTypes()) {
+                propagate(subType, access, visited, consumer);
+            }
+        }
     }
 
     @Override
     public String mapMethodName(String owner, String name, String desc) {
-        String mappedName = map(owner + "." + name + desc);
+        String mappedName = methodTable.get(owner, name, desc);
         if (mappedName == null) {
-            ClassData originalDeclarer = getOriginalMethodDeclarer(owner, name, desc, true);
-            if (originalDeclarer != null) {
-                mappedName = mapMethodName(originalDeclarer.getInternalName(), name, desc);
+            mappedName = unmappedMethods.get(owner, name, desc);
+            if (mappedName == null) {
+                if (recordStats) {
+                    unmappedMethodMisses.increment();
+                }
+                Object event = RemapEvents.beginHierarchyResolution();
+                mappedName = resolveUnmappedMethodName(owner, name, desc);
+                RemapEvents.endHierarchyResolution(event, owner, name, desc);
+                unmappedMethods.put(owner, name, desc, mappedName);
+            } else if (recordStats) {
+                unmappedMethodHits.increment();
             }
         }
-        if (mappedName == null && owner.startsWith("net/minecraft/server/")) {
-            mappedName = getBridgeMethodName(owner, name, desc);
-        }
-        return mappedName == null ? name : mappedName;
+        return mappedName;
     }
 
     @Override
     public String mapFieldName(String owner, String name, String desc) {
-        String mappedName = map(owner + "." + name);
+        String mappedName = fieldTable.get(owner, name, desc);
         if (mappedName == null) {
-            ClassData originalDeclarer = getOriginalFieldDeclarer(owner, name, desc, true);
+            mappedName = unmappedFields.get(owner, name, desc);
+            if (mappedName == null) {
+                if (recordStats) {
+                    unmappedFieldMisses.increment();
+                }
+                Object event = RemapEvents.beginHierarchyResolution();
+                mappedName = resolveUnmappedFieldName(owner, name, desc);
+                RemapEvents.endHierarchyResolution(event, owner, name, desc);
+                unmappedFields.put(owner, name, desc, mappedName);
+            } else if (recordStats) {
+                unmappedFieldHits.increment();
+            }
+        }
+        return mappedName;
+    }
+
+    /**
+     * Resolves the mapped name of a method by walking up to the class declaring it, or returns null if there is no
+     * mapping for it.
+     */
+    private String resolveMethodName(String owner, String name, String desc) {
+        String mappedName = map(classRemapper.mapType(owner) + "." + name + classRemapper.mapMethodDesc(desc));
+        if (mappedName == null) {
+            String originalDeclarer = getOriginalMethodDeclarer(owner, name, desc, true);
             if (originalDeclarer != null) {
-                mappedName = mapFieldName(originalDeclarer.getInternalName(), name, desc);
+                return resolveMethodName(originalDeclarer, name, desc);
             }
         }
-        if (mappedName == null && owner.startsWith("net/minecraft/server/")) {
-            try {
-                if (switchMapCache.get(owner)) {
-                    mappedName = getSwitchMapArrayName(owner, name, desc);
-                }
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+        return mappedName;
+    }
+
+    private String resolveFieldName(String owner, String name, String desc) {
+        String mappedName = map(classRemapper.mapType(owner) + "." + name);
+        if (mappedName == null) {
+            String originalDeclarer = getOriginalFieldDeclarer(owner, name, desc, true);
+            if (originalDeclarer != null) {
+                return resolveFieldName(originalDeclarer, name, desc);
             }
         }
+        return mappedName;
+    }
+
+    /**
+     * Resolves the name of a method which isn't in the lookup table. It can still be mapped on a class that doesn't
+     * declare it, which is checked for every class on the way up, like {@link #resolveMethodName} does. Otherwise
+     * only the class that declared it first can have renamed it through a bridge method.
+     */
+    private String resolveUnmappedMethodName(String owner, String name, String desc) {
+        String mappedOwner = classRemapper.mapType(owner);
+        String mappedName = map(mappedOwner + "." + name + classRemapper.mapMethodDesc(desc));
+        if (mappedName != null) {
+            return mappedName;
+        }
+        String originalDeclarer = getOriginalMethodDeclarer(owner, name, desc, true);
+        if (originalDeclarer != null) {
+            return resolveUnmappedMethodName(originalDeclarer, name, desc);
+        }
+        if (mappedOwner.startsWith("net/minecraft/server/")) {
+            mappedName = getBridgeMethodName(owner, name, desc);
+        }
+        return mappedName == null ? name : mappedName;
+    }
+
+    private String resolveUnmappedFieldName(String owner, String name, String desc) {
+        String mappedName = map(classRemapper.mapType(owner) + "." + name);
+        if (mappedName != null) {
+            return mappedName;
+        }
+        String originalDeclarer = getOriginalFieldDeclarer(owner, name, desc, true);
+        if (originalDeclarer != null) {
+            return resolveUnmappedFieldName(originalDeclarer, name, desc);
+        }
+        mappedName = switchMapIndex.getName(owner, name, desc);
         return mappedName == null ? name : mappedName;
     }
 
     @SuppressWarnings("Duplicates")
-    private ClassData getOriginalFieldDeclarer(String owner, String name, String desc, boolean skipFirst) {
-        ClassData data = loader.getDataFor(owner);
-        if (data != null) {
-            FieldNode fieldNode = data.getField(name, desc);
-            if (fieldNode != null) {
-                if (Modifier.isPrivate(fieldNode.access)) {
+    private String getOriginalFieldDeclarer(String owner, String name, String desc, boolean skipFirst) {
+        if (recordStats) {
+            hierarchyResolutions.increment();
+        }
+        ClassHierarchy.ClassInfo info = hierarchy.getClass(owner);
+        if (info != null) {
+            int access = info.getFieldAccess(name, desc);
+            if (access != ClassHierarchy.NOT_DECLARED) {
+                if (Modifier.isPrivate(access)) {
                     return null;
                 }
                 if (!skipFirst) {
-                    return data;
+                    return owner;
                 }
             }
-            for (ClassData superData : data.getSuperClasses()) {
-                data = getOriginalFieldDeclarer(superData.getInternalName(), name, desc, false);
-                if (data != null) {
-                    return data;
+            for (ClassHierarchy.ClassInfo superInfo : info.getSuperTypes()) {
+                String declarer = getOriginalFieldDeclarer(superInfo.getName(), name, desc, false);
+                if (declarer != null) {
+                    return declarer;
                 }
             }
         }
@@ -101,22 +331,25 @@ public class MemberRemapper extends SimpleRemapper {
     }
 
     @SuppressWarnings("Duplicates")
-    private ClassData getOriginalMethodDeclarer(String owner, String name, String desc, boolean skipFirst) {
-        ClassData data = loader.getDataFor(owner);
-        if (data != null) {
-            MethodNode methodNode = data.getMethod(name, desc);
-            if (methodNode != null) {
-                if (Modifier.isPrivate(methodNode.access)) {
+    private String getOriginalMethodDeclarer(String owner, String name, String desc, boolean skipFirst) {
+        if (recordStats) {
+            hierarchyResolutions.increment();
+        }
+        ClassHierarchy.ClassInfo info = hierarchy.getClass(owner);
+        if (info != null) {
+            int access = info.getMethodAccess(name, desc);
+            if (access != ClassHierarchy.NOT_DECLARED) {
+                if (Modifier.isPrivate(access)) {
                     return null;
                 }
                 if (!skipFirst) {
-                    return data;
+                    return owner;
                 }
             }
-            for (ClassData superData : data.getSuperClasses()) {
-                data = getOriginalMethodDeclarer(superData.getInternalName(), name, desc, false);
-                if (data != null) {
-                    return data;
+            for (ClassHierarchy.ClassInfo superInfo : info.getSuperTypes()) {
+                String declarer = getOriginalMethodDeclarer(superInfo.getName(), name, desc, false);
+                if (declarer != null) {
+                    return declarer;
                 }
             }
         }
@@ -152,133 +385,13 @@ public class MemberRemapper extends SimpleRemapper {
      * Mojang's classes also don't seem to have the bridge modifier, just the synthetic one for some reason.
      */
     String getBridgeMethodName(String owner, String name, String desc) {
-        Optional<String> optional = bridgeMethodCache.getIfPresent(owner + "." + name + desc);
-        if (optional != null) {
-            return optional.orElse(null);
-        }
-        if (!owner.startsWith("net/minecraft/server/")) {
-            bridgeMethodCache.put(owner + "." + name + desc, Optional.empty());
-            return null;
-        }
-        ClassData data = loader.getDataFor(owner);
-        if (data == null) {
-            bridgeMethodCache.put(owner + "." + name + desc, Optional.empty());
-            return null;
-        }
-        MethodNode targetNode = data.getMethod(name, desc);
-        if (targetNode == null) {
-            bridgeMethodCache.put(owner + "." + name + desc, Optional.empty());
-            return null;
-        }
-        //noinspection unchecked
-        for (MethodNode methodNode : (List<MethodNode>) data.getNode().methods) {
-            if ((methodNode.access & SYNTHETIC) == SYNTHETIC || (methodNode.access & BRIDGE) == BRIDGE) {
-                for (AbstractInsnNode insnNode : methodNode.instructions.toArray()) {
-                    if (insnNode instanceof MethodInsnNode) {
-                        MethodInsnNode methodInsn = (MethodInsnNode) insnNode;
-                        if (methodInsn.owner.equals(owner) && methodInsn.name.equals(targetNode.name) && methodInsn.desc.equals(targetNode.desc)) {
-                            if (!methodNode.name.equals(targetNode.name)) {
-                                bridgeMethodCache.put(owner + "." + name + desc, Optional.of(methodNode.name));
-                                if ((methodNode.access & SYNTHETIC) == SYNTHETIC && (methodNode.access & BRIDGE) == 0 && !addBridgeModifiers.contains(owner + "." + name + desc)) {
-                                    addBridgeModifiers.add(owner + "." + methodNode.name + methodNode.desc);
-                                }
-                                return methodNode.name;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        bridgeMethodCache.put(owner + "." + name + desc, Optional.empty());
-        return null;
-     }
-
-    /**
-     * When you have a Switch on an Enum, the java compiler creates an anonymous inner class with mappings for the enums.
-     * The class contains a synthetic static final int[] with the name $SwitchMap$<Enum> (the enum uses $ as package
-     * separator). For each Enum there exists a switch on in the class, one of these fields are created. The arrays
-     * are then populated in the static initializer like this:
-     *
-     * synthetic static final int[] $SwitchMap$my$package$ExampleEnum
-     *
-     * static {
-     *     $SwitchMap$my$package$ExampleEnum = new int[my.package.ExampleEnum.values().length];
-     *     try {
-     *         $SwitchMap$my$package$ExampleEnum[my.package.ExampleEnum.ENUM_VALUE.ordinal()] = 1; // Indexes start at 1, not 0!
-     *     } catch (NoSuchFieldError err) {}
-     *     try {
-     *         $SwitchMap$my$package$ExampleEnum[my.package.ExampleEnum.ENUM_VALUE_2.ordinal()] = 2;
-     *     } catch (NoSuchFieldError err) {}
-     * }
-     *
-     * NOTE: Inner classes don't create a separate SwitchMap, they use the one of the outer class.
-     *
-     * Our problem is that Mojang's Obfuscation tool renames the static array fields, which makes most decompilers
-     * trip up, so we need to try to fix it.
-     */
-    private boolean isEnumSwitchMap(String owner) {
-        ClassData data = loader.getDataFor(owner);
-        if (data == null) {
-            return false;
-        }
-        // Check if the class is synthetic and has a static initializer method.
-        if ((data.getNode().access & SYNTHETIC) == SYNTHETIC && data.getMethod("<clinit>", "()V") != null) {
-            //noinspection unchecked
-            for (FieldNode fieldNode : (List<FieldNode>) data.getNode().fields) {
-                // Check if the class has at least one synthetic static final int[] field whose name doesn't start with
-                // '$SwitchMap$'
-                if (!fieldNode.name.startsWith("$SwitchMap$") && fieldNode.desc.equals("[I") && isSyntheticFinalAndStatic(fieldNode.access)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return bridgeIndex.getBridgeName(owner, name, desc);
     }
 
     /**
-     * Gets the appropriate name of the SwitchMap field. This assumes that it has already been made sure that this
-     * class is a SwitchMap.
-     *
-     * @see #isEnumSwitchMap(String)
+     * Gets whether the method is one of Mojang's bridge methods, which only have the synthetic modifier.
      */
-    private String getSwitchMapArrayName(String owner, String name, String desc) {
-        ClassData data = loader.getDataFor(owner);
-        if (data == null) {
-            return null;
-        }
-        FieldNode fieldNode = data.getField(name, desc);
-        if (!fieldNode.desc.equals("[I") || !isSyntheticFinalAndStatic(fieldNode.access)) {
-            return null;
-        }
-        /*
-         * Bytecode for the array creation is:
-         * INVOKESTATIC Enum.values()
-         * ARRAYLENGTH
-         * NEWARRAY int
-         * PUTSTATIC $SwitchMap$Enum
-         */
-        MethodNode clinitNode = data.getMethod("<clinit>", "()V");
-        for (AbstractInsnNode insnNode : clinitNode.instructions.toArray()) {
-            if (insnNode.getOpcode() == Opcodes.PUTSTATIC) {
-                FieldInsnNode fieldInsnNode = (FieldInsnNode) insnNode;
-                if (fieldInsnNode.owner.equals(owner) && fieldInsnNode.name.equals(name) && fieldInsnNode.desc.equals(desc)) {
-                    // This should be a MethodInsnNode with Opcode INVOKESTATIC
-                    insnNode = insnNode.getPrevious().getPrevious().getPrevious();
-                    if (insnNode.getOpcode() != Opcodes.INVOKESTATIC || !(insnNode instanceof MethodInsnNode)) {
-                        throw new IllegalStateException("InsnNode " + insnNode + " (Opcode " + insnNode.getOpcode() + ") was expected to be a MethodInsnNode with Opcode INVOKESTATIC!");
-                    }
-                    MethodInsnNode methodInsnNode = (MethodInsnNode) insnNode;
-                    if (!methodInsnNode.name.equals("values")) {
-                        throw new IllegalStateException("Name of node was expected to be \"values\", but was " + methodInsnNode.name);
-                    }
-                    return "$SwitchMap$" + methodInsnNode.owner.replace('/', '$');
-                }
-            }
-        }
-        return null;
-    }
-
-    private boolean isSyntheticFinalAndStatic(int modifier) {
-        return Modifier.isFinal(modifier) && Modifier.isStatic(modifier) && (modifier & SYNTHETIC) == SYNTHETIC;
+    public boolean isMissingBridgeModifier(String owner, String name, String desc) {
+        return bridgeIndex.isMissingBridgeModifier(owner, name, desc);
     }
 }
@@ -0,0 +1,251 @@
+package com.bringholm.minecraftdeobfuscator.remapper;
+
+import com.bringholm.minecraftdeobfuscator.jario.ClassData;
+import com.bringholm.minecraftdeobfuscator.jario.ClassHierarchy;
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jfr.RemapEvents;
+import com.bringholm.minecraftdeobfuscator.util.MemberTable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * When you have a Switch on an Enum, the java compiler creates an anonymous inner class with mappings for the enums.
+ * The class contains a synthetic static final int[] with the name $SwitchMap$<Enum> (the enum uses $ as package
+ * separator). For each Enum there exists a switch on in the class, one of these fields are created. The arrays
+ * are then populated in the static initializer like this:
+ *
+ * synthetic static final int[] $SwitchMap$my$package$ExampleEnum
+ *
+ * static {
+ *     $SwitchMap$my$package$ExampleEnum = new int[my.package.ExampleEnum.values().length];
+ *     try {
+ *         $SwitchMap$my$package$ExampleEnum[my.package.ExampleEnum.ENUM_VALUE.ordinal()] = 1; // Indexes start at 1, not 0!
+ *     } catch (NoSuchFieldError err) {}
+ *     try {
+ *         $SwitchMap$my$package$ExampleEnum[my.package.ExampleEnum.ENUM_VALUE_2.ordinal()] = 2;
+ *     } catch (NoSuchFieldError err) {}
+ * }
+ *
+ * NOTE: Inner classes don't create a separate SwitchMap, they use the one of the outer class.
+ *
+ * Our problem is that Mojang's Obfuscation tool renames the static array fields, which makes most decompilers
+ * trip up, so we need to try to fix it. This finds all of the SwitchMap classes in the jar up front, using the
+ * hierarchy to find the synthetic classes with such fields, and reads the name of the enum from the static
+ * initializer of each of them. Fields whose array isn't created like above keep their name, and are reported
+ * in the diagnostics.
+ */
+class SwitchMapIndex {
+    private static final int SYNTHETIC = 0x00001000;
+
+    private final MemberTable<String> names = new MemberTable<>();
+    private final List<String> diagnostics = new ArrayList<>();
+    private int size;
+    private boolean recordStats;
+    private final LongAdder lookups = new LongAdder();
+
+    private SwitchMapIndex() {
+    }
+
+    /**
+     * @param recordStats whether to count the lookups for {@link #getLookups()}
+     */
+    static SwitchMapIndex build(JarLoader loader, ClassHierarchy hierarchy, Remapper classRemapper, boolean recordStats) throws IOException {
+        SwitchMapIndex index = new SwitchMapIndex();
+        index.recordStats = recordStats;
+        for (ClassHierarchy.ClassInfo info : hierarchy.getClasses()) {
+            if (isCandidate(info) && classRemapper.mapType(info.getName()).startsWith("net/minecraft/server/")) {
+                ClassData data = loader.loadClassFromJar(info.getName());
+                if (data != null) {
+                    Object event = RemapEvents.beginClassAnalysis();
+                    int previousSize = index.size;
+                    new ClassReader(data.getBytecode()).accept(index.new Scanner(info, classRemapper), ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    RemapEvents.endClassAnalysis(event, "SwitchMap arrays", info.getName(), data.getBytecode().length, index.size - previousSize);
+                }
+            }
+        }
+        Collections.sort(index.diagnostics);
+        return index;
+    }
+
+    /**
+     * Checks whether the class is synthetic, has a static initializer and has at least one synthetic static final
+     * int[] field whose name doesn't start with '$SwitchMap$'.
+     */
+    private static boolean isCandidate(ClassHierarchy.ClassInfo info) {
+        if ((info.getAccess() & SYNTHETIC) != SYNTHETIC || info.getMethodAccess("<clinit>", "()V") == ClassHierarchy.NOT_DECLARED) {
+            return false;
+        }
+        for (Map.Entry<String, Map<String, Integer>> entry : info.getFields().entrySet()) {
+            Integer access = entry.getValue().get("[I");
+            if (!entry.getKey().startsWith("$SwitchMap$") && access != null && isSyntheticFinalAndStatic(access)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSyntheticFinalAndStatic(int modifier) {
+        return Modifier.isFinal(modifier) && Modifier.isStatic(modifier) && (modifier & SYNTHETIC) == SYNTHETIC;
+    }
+
+    /**
+     * Gets the $SwitchMap$ name of the field, or null if it isn't a SwitchMap array.
+     */
+    String getName(String owner, String name, String desc) {
+        if (recordStats) {
+            lookups.increment();
+        }
+        return names.get(owner, name, desc);
+    }
+
+    /**
+     * Gets the amount of SwitchMap arrays that were found.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets how many fields have been looked up, if the lookups are counted.
+     */
+    long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * Gets the SwitchMap arrays that couldn't be renamed, and why.
+     */
+    List<String> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    private class Scanner extends ClassVisitor {
+        private final ClassHierarchy.ClassInfo info;
+        private final Remapper classRemapper;
+
+        private Scanner(ClassHierarchy.ClassInfo info, Remapper classRemapper) {
+            super(Opcodes.ASM6);
+            this.info = info;
+            this.classRemapper = classRemapper;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if (!name.equals("<clinit>") || !desc.equals("()V")) {
+                return null;
+            }
+            /*
+             * Bytecode for the array creation is:
+             * INVOKESTATIC Enum.values()
+             * ARRAYLENGTH
+             * NEWARRAY int
+             * PUTSTATIC $SwitchMap$Enum
+             */
+            return new MethodVisitor(Opcodes.ASM6) {
+                // How far into the pattern the last instructions got, and the enum of the values() call
+                private int matched;
+                private String enumName;
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                    if (opcode == Opcodes.INVOKESTATIC && name.equals("values")) {
+                        matched = 1;
+                        enumName = owner;
+                    } else {
+                        matched = 0;
+                    }
+                }
+
+                @Override
+                public void visitInsn(int opcode) {
+                    matched = opcode == Opcodes.ARRAYLENGTH && matched == 1 ? 2 : 0;
+                }
+
+                @Override
+                public void visitIntInsn(int opcode, int operand) {
+                    matched = opcode == Opcodes.NEWARRAY && operand == Opcodes.T_INT && matched == 2 ? 3 : 0;
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                    if (opcode == Opcodes.PUTSTATIC && owner.equals(info.getName()) && isSwitchMapField(name, desc)) {
+                        if (matched == 3) {
+                            if (names.putIfAbsent(owner, name, desc, "$SwitchMap$" + classRemapper.mapType(enumName).replace('/', '$')) == null) {
+                                size++;
+                            }
+                        } else {
+                            diagnostics.add("SwitchMap field " + owner + "." + name + " isn't created from the values() of an enum");
+                        }
+                    }
+                    matched = 0;
+                }
+
+                @Override
+                public void visitVarInsn(int opcode, int var) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitJumpInsn(int opcode, Label label) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitLdcInsn(Object cst) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitIincInsn(int var, int increment) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitMultiANewArrayInsn(String desc, int dims) {
+                    matched = 0;
+                }
+
+                @Override
+                public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                    matched = 0;
+                }
+            };
+        }
+
+        private boolean isSwitchMapField(String name, String desc) {
+            if (!desc.equals("[I")) {
+                return false;
+            }
+            int access = info.getFieldAccess(name, desc);
+            return access != ClassHierarchy.NOT_DECLARED && isSyntheticFinalAndStatic(access);
+        }
+    }
+}
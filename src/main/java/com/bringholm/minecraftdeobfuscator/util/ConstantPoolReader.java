@@ -0,0 +1,127 @@
+package com.bringholm.minecraftdeobfuscator.util;
+
+import org.objectweb.asm.ClassReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the names a class refers to straight from its constant pool, without parsing the rest of the class. Every
+ * class and member that the class uses has an entry in the constant pool, so this finds the same references as
+ * visiting the whole class would, at a fraction of the cost.
+ */
+public class ConstantPoolReader {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+
+    private ConstantPoolReader() {
+    }
+
+    /**
+     * Passes the entries of the constant pool to the visitor, in the order they are stored in.
+     */
+    public static void accept(byte[] bytecode, ReferenceVisitor visitor) {
+        ClassReader reader = new ClassReader(bytecode);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            // The second slot of longs and doubles has no item
+            if (offset == 0) {
+                continue;
+            }
+            // The offsets of the items are the same in the bytecode, since the reader starts at the first byte
+            int tag = bytecode[offset - 1];
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    String string = readUtf8Item(bytecode, offset);
+                    if (string != null) {
+                        visitor.visitString(string);
+                    }
+                    break;
+                case CONSTANT_CLASS:
+                    visitor.visitClass(reader.readUTF8(offset, buffer));
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                case CONSTANT_STRING:
+                    visitor.visitConstant(reader.readConst(i, buffer));
+                    break;
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF: {
+                    String owner = reader.readClass(offset, buffer);
+                    int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+                    String name = reader.readUTF8(nameAndType, buffer);
+                    String desc = reader.readUTF8(nameAndType + 2, buffer);
+                    if (tag == CONSTANT_FIELDREF) {
+                        visitor.visitField(owner, name, desc);
+                    } else {
+                        visitor.visitMethod(owner, name, desc);
+                    }
+                    break;
+                }
+                case CONSTANT_INVOKE_DYNAMIC: {
+                    int nameAndType = reader.getItem(reader.readUnsignedShort(offset + 2));
+                    visitor.visitInvokeDynamic(reader.readUTF8(nameAndType, buffer), reader.readUTF8(nameAndType + 2, buffer));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the string could be a descriptor or signature that names a class, from its first character.
+     */
+    public static boolean mayBeSignature(String string) {
+        return !string.isEmpty() && "(<L[".indexOf(string.charAt(0)) != -1;
+    }
+
+    private static String readUtf8Item(byte[] bytecode, int offset) {
+        int length = ((bytecode[offset] & 0xFF) << 8) | (bytecode[offset + 1] & 0xFF);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(bytecode, offset, length + 2)).readUTF();
+        } catch (IOException e) {
+            // Only thrown for malformed strings, which the class remapping would fail on as well
+            return null;
+        }
+    }
+
+    /**
+     * Receives the entries of a constant pool. The constant pool doesn't say what a string is used for, so
+     * {@link #visitString(String)} gets all of them, including the names, descriptors and signatures.
+     */
+    public interface ReferenceVisitor {
+        default void visitString(String string) {
+        }
+
+        default void visitClass(String name) {
+        }
+
+        /**
+         * Visits a number or string constant, as an Integer, Float, Long, Double or String.
+         */
+        default void visitConstant(Object value) {
+        }
+
+        default void visitField(String owner, String name, String desc) {
+        }
+
+        default void visitMethod(String owner, String name, String desc) {
+        }
+
+        default void visitInvokeDynamic(String name, String desc) {
+        }
+    }
+}
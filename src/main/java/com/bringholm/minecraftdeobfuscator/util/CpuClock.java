@@ -0,0 +1,42 @@
+package com.bringholm.minecraftdeobfuscator.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads how much CPU time has been used, in nanoseconds. Not every JVM can measure it, in which case the times are
+ * -1, which is also what the times derived from them should be reported as.
+ */
+public class CpuClock {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final OperatingSystemMXBean OPERATING_SYSTEM = ManagementFactory.getOperatingSystemMXBean();
+    private static final boolean THREAD_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private CpuClock() {
+    }
+
+    /**
+     * Gets the CPU time used by the calling thread.
+     */
+    public static long threadTime() {
+        return THREAD_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Gets the CPU time used by every thread of the JVM, including the garbage collector and the JIT compiler.
+     */
+    public static long processTime() {
+        if (OPERATING_SYSTEM instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) OPERATING_SYSTEM).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the time between two readings of the clock, or -1 if either of them is unknown.
+     */
+    public static long elapsed(long start, long end) {
+        return start == -1 || end == -1 ? -1 : end - start;
+    }
+}
@@ -3,28 +3,24 @@ package com.bringholm.minecraftdeobfuscator.util;
 import com.google.common.collect.Maps;
 import org.objectweb.asm.Type;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.function.Predicate;
 
 public class LocalVariableNameHelper {
     private static final Map<String, String> RESERVED_KEYWORDS_WITH_ALTERNATIVES = Maps.newHashMap();
 
     private static final Map<String, String> EXPLICIT_NAMES = Maps.newHashMap();
-    private static final Map<Predicate<String>, Function<String, String>> GENERALIZED_EXPLICIT_NAMES = Maps.newHashMap();
+    // Applied in order to the class name of an object type
+    private static final NameRule[] NAME_RULES = {
+            new NameRule("Abstract", LocalVariableNameHelper::removeAbstract)
+    };
+    // Descriptor -> the name of its variables before they are numbered, shared by every method and thread
+    private static final Map<String, String> BASE_NAMES = new ConcurrentHashMap<>();
 
     static {
         EXPLICIT_NAMES.put("net.minecraft.server.CompoundNBTTag", "compound");
-        GENERALIZED_EXPLICIT_NAMES.put(s -> s.contains("Abstract"), (string) -> {
-            String simpleNameWithoutAbstract;
-            if (string.indexOf('.') == -1) {
-                simpleNameWithoutAbstract = string.replace("Abstract", "");
-            } else {
-                simpleNameWithoutAbstract = string.substring(string.lastIndexOf('.') + 1).replace("Abstract", "");
-            }
-            char firstChar = simpleNameWithoutAbstract.charAt(0);
-            return Character.toLowerCase(firstChar) + simpleNameWithoutAbstract.substring(1);
-        });
         RESERVED_KEYWORDS_WITH_ALTERNATIVES.put("abstract", "abstr");
         RESERVED_KEYWORDS_WITH_ALTERNATIVES.put("assert", "ass");
         RESERVED_KEYWORDS_WITH_ALTERNATIVES.put("boolean", "bool");
@@ -69,20 +65,37 @@ public class LocalVariableNameHelper {
         RESERVED_KEYWORDS_WITH_ALTERNATIVES.put("true", "t");
     }
 
-    public static String getVariableName(String oldName, String desc, Map<String, Integer> indices) {
+    /**
+     * Gets the name of a local variable, which is based on its type if it is obfuscated. The variables of a method
+     * that share a name are numbered in the order they are named, starting from the second one.
+     *
+     * @param desc    the deobfuscated descriptor of the variable
+     * @param indices how many variables of the method have been given each name so far
+     */
+    public static String getVariableName(String oldName, String desc, Indices indices) {
         if (!isSnowman(oldName)) {
             return oldName;
         }
-        Type type = Type.getType(desc);
-        String name = createName(type);
-        int index = 0;
-        if (indices.containsKey(name)) {
-            index = indices.get(name);
-        }
-        index++;
-        indices.put(name, index);
-        if (index != 1) {
-            name += index;
+        String name = getBaseName(desc);
+        int index = indices.increment(name);
+        return index == 1 ? name : name + index;
+    }
+
+    /**
+     * Gets whether the local variable has an obfuscated name, which has to be replaced.
+     */
+    public static boolean isSnowman(String string) {
+        return string.equals("☃");
+    }
+
+    /**
+     * Gets the name that the variables of a type are given, before they are numbered.
+     */
+    private static String getBaseName(String desc) {
+        String name = BASE_NAMES.get(desc);
+        if (name == null) {
+            name = createName(Type.getType(desc));
+            BASE_NAMES.putIfAbsent(desc, name);
         }
         return name;
     }
@@ -94,9 +107,9 @@ public class LocalVariableNameHelper {
             }
             String name = type.getClassName();
             boolean modified = false;
-            for (Map.Entry<Predicate<String>, Function<String, String>> entry : GENERALIZED_EXPLICIT_NAMES.entrySet()) {
-                if (entry.getKey().test(name)) {
-                    name = entry.getValue().apply(name);
+            for (NameRule rule : NAME_RULES) {
+                if (name.contains(rule.token)) {
+                    name = rule.rename.apply(name);
                     modified = true;
                 }
             }
@@ -130,6 +143,17 @@ public class LocalVariableNameHelper {
         }
     }
 
+    private static String removeAbstract(String className) {
+        String simpleNameWithoutAbstract;
+        if (className.indexOf('.') == -1) {
+            simpleNameWithoutAbstract = className.replace("Abstract", "");
+        } else {
+            simpleNameWithoutAbstract = className.substring(className.lastIndexOf('.') + 1).replace("Abstract", "");
+        }
+        char firstChar = simpleNameWithoutAbstract.charAt(0);
+        return Character.toLowerCase(firstChar) + simpleNameWithoutAbstract.substring(1);
+    }
+
     private static String createPrimitiveTypeName(Type type) {
         switch (type.getSort()) {
             case Type.BOOLEAN:
@@ -153,7 +177,51 @@ public class LocalVariableNameHelper {
         }
     }
 
-    private static boolean isSnowman(String string) {
-        return string.equals("☃");
+    /**
+     * A rule that renames the variables of the classes whose name contains the token.
+     */
+    private static class NameRule {
+        private final String token;
+        private final Function<String, String> rename;
+
+        private NameRule(String token, Function<String, String> rename) {
+            this.token = token;
+            this.rename = rename;
+        }
+    }
+
+    /**
+     * Counts how many variables of a method have been given each name. A method only uses a handful of names, so
+     * they are kept in arrays that are searched in order, and the counts are plain ints. The same instance can be
+     * reused for the next method after a {@link #reset()}.
+     */
+    public static class Indices {
+        private String[] names = new String[8];
+        private int[] counts = new int[8];
+        private int size;
+
+        /**
+         * Counts another variable with the name, and returns how many variables now have it.
+         */
+        int increment(String name) {
+            for (int i = 0; i < size; i++) {
+                // The base names are cached, so the same name is usually the same instance
+                if (names[i] == name || names[i].equals(name)) {
+                    return ++counts[i];
+                }
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            names[size] = name;
+            counts[size] = 1;
+            size++;
+            return 1;
+        }
+
+        public void reset() {
+            size = 0;
+        }
     }
 }
@@ -0,0 +1,61 @@
+package com.bringholm.minecraftdeobfuscator.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A map keyed by a member's owner, name and descriptor. The parts are kept in nested maps instead of being joined
+ * into a single string, so looking a member up doesn't allocate anything. Strings cache their hash code, so the
+ * strings coming out of a ClassReader (which are reused within a class) are only hashed once.
+ * <p>
+ * This is safe to use from several threads. Null values are not allowed.
+ */
+public class MemberTable<V> {
+    private final Map<String, Map<String, Map<String, V>>> owners = new ConcurrentHashMap<>();
+
+    public V get(String owner, String name, String desc) {
+        Map<String, Map<String, V>> names = owners.get(owner);
+        if (names == null) {
+            return null;
+        }
+        Map<String, V> descs = names.get(name);
+        return descs == null ? null : descs.get(desc);
+    }
+
+    public boolean contains(String owner, String name, String desc) {
+        return get(owner, name, desc) != null;
+    }
+
+    public V put(String owner, String name, String desc, V value) {
+        return getDescs(owner, name).put(desc, value);
+    }
+
+    public V putIfAbsent(String owner, String name, String desc, V value) {
+        return getDescs(owner, name).putIfAbsent(desc, value);
+    }
+
+    /**
+     * Gets the amount of members in the table. This walks over the whole table.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, Map<String, V>> names : owners.values()) {
+            for (Map<String, V> descs : names.values()) {
+                size += descs.size();
+            }
+        }
+        return size;
+    }
+
+    private Map<String, V> getDescs(String owner, String name) {
+        Map<String, Map<String, V>> names = owners.get(owner);
+        if (names == null) {
+            names = owners.computeIfAbsent(owner, key -> new ConcurrentHashMap<>());
+        }
+        Map<String, V> descs = names.get(name);
+        if (descs == null) {
+            descs = names.computeIfAbsent(name, key -> new ConcurrentHashMap<>(2));
+        }
+        return descs;
+    }
+}
@@ -0,0 +1,226 @@
+package com.bringholm.minecraftdeobfuscator.util;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.objectweb.asm.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashes what a class declares and does, rather than its bytes. The class is visited without its debug information
+ * (source file, line numbers and local variable names) and stack map frames, and every constant is hashed by its
+ * value instead of its index, so the hash doesn't change when the class is compiled again with another layout of the
+ * constant pool. Murmur3 is used, since the hash only has to tell classes apart and not be secure.
+ */
+public class StructuralHasher extends ClassVisitor {
+    private final Hasher hasher = Hashing.murmur3_128().newHasher();
+
+    private StructuralHasher() {
+        super(Opcodes.ASM6);
+    }
+
+    /**
+     * Gets the structural hash of the class as a hex string.
+     */
+    public static String hash(byte[] bytecode) {
+        StructuralHasher visitor = new StructuralHasher();
+        new ClassReader(bytecode).accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return visitor.hasher.hash().toString();
+    }
+
+    private void putString(String string) {
+        if (string == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(string.length()).putString(string, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void putStrings(String[] strings) {
+        if (strings == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(strings.length);
+        for (String string : strings) {
+            putString(string);
+        }
+    }
+
+    private void putConstant(Object value) {
+        if (value instanceof Handle) {
+            Handle handle = (Handle) value;
+            hasher.putByte((byte) 'H').putInt(handle.getTag()).putBoolean(handle.isInterface());
+            putString(handle.getOwner());
+            putString(handle.getName());
+            putString(handle.getDesc());
+        } else if (value instanceof Type) {
+            hasher.putByte((byte) 'T');
+            putString(((Type) value).getDescriptor());
+        } else {
+            // The type of the constant matters as well, 1 and 1L aren't the same
+            putString(value == null ? null : value.getClass().getSimpleName());
+            putString(value == null ? null : value.toString());
+        }
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        hasher.putInt(access);
+        putString(name);
+        putString(signature);
+        putString(superName);
+        putStrings(interfaces);
+    }
+
+    @Override
+    public void visitOuterClass(String owner, String name, String desc) {
+        hasher.putByte((byte) 'O');
+        putString(owner);
+        putString(name);
+        putString(desc);
+    }
+
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        hasher.putByte((byte) 'I').putInt(access);
+        putString(name);
+        putString(outerName);
+        putString(innerName);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        hasher.putByte((byte) 'F').putInt(access);
+        putString(name);
+        putString(desc);
+        putString(signature);
+        putConstant(value);
+        return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        hasher.putByte((byte) 'M').putInt(access);
+        putString(name);
+        putString(desc);
+        putString(signature);
+        putStrings(exceptions);
+        return new MethodVisitor(Opcodes.ASM6) {
+            // Labels are hashed by the order they are first used in, since the offsets change with the debug information
+            private final Map<Label, Integer> labelIndexes = new HashMap<>();
+
+            private void putLabel(Label label) {
+                hasher.putInt(labelIndexes.computeIfAbsent(label, key -> labelIndexes.size()));
+            }
+
+            @Override
+            public void visitInsn(int opcode) {
+                hasher.putInt(opcode);
+            }
+
+            @Override
+            public void visitIntInsn(int opcode, int operand) {
+                hasher.putInt(opcode).putInt(operand);
+            }
+
+            @Override
+            public void visitVarInsn(int opcode, int var) {
+                hasher.putInt(opcode).putInt(var);
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                hasher.putInt(opcode);
+                putString(type);
+            }
+
+            @Override
+            public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                hasher.putInt(opcode);
+                putString(owner);
+                putString(name);
+                putString(desc);
+            }
+
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                hasher.putInt(opcode).putBoolean(itf);
+                putString(owner);
+                putString(name);
+                putString(desc);
+            }
+
+            @Override
+            public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                hasher.putInt(Opcodes.INVOKEDYNAMIC);
+                putString(name);
+                putString(desc);
+                putConstant(bsm);
+                hasher.putInt(bsmArgs.length);
+                for (Object bsmArg : bsmArgs) {
+                    putConstant(bsmArg);
+                }
+            }
+
+            @Override
+            public void visitJumpInsn(int opcode, Label label) {
+                hasher.putInt(opcode);
+                putLabel(label);
+            }
+
+            @Override
+            public void visitLabel(Label label) {
+                hasher.putByte((byte) 'L');
+                putLabel(label);
+            }
+
+            @Override
+            public void visitLdcInsn(Object cst) {
+                hasher.putInt(Opcodes.LDC);
+                putConstant(cst);
+            }
+
+            @Override
+            public void visitIincInsn(int var, int increment) {
+                hasher.putInt(Opcodes.IINC).putInt(var).putInt(increment);
+            }
+
+            @Override
+            public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+                hasher.putInt(Opcodes.TABLESWITCH).putInt(min).putInt(max);
+                putLabel(dflt);
+                for (Label label : labels) {
+                    putLabel(label);
+                }
+            }
+
+            @Override
+            public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+                hasher.putInt(Opcodes.LOOKUPSWITCH);
+                putLabel(dflt);
+                for (int i = 0; i < keys.length; i++) {
+                    hasher.putInt(keys[i]);
+                    putLabel(labels[i]);
+                }
+            }
+
+            @Override
+            public void visitMultiANewArrayInsn(String desc, int dims) {
+                hasher.putInt(Opcodes.MULTIANEWARRAY).putInt(dims);
+                putString(desc);
+            }
+
+            @Override
+            public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+                hasher.putByte((byte) 'C');
+                putLabel(start);
+                putLabel(end);
+                putLabel(handler);
+                putString(type);
+            }
+        };
+    }
+}
@@ -4,10 +4,14 @@ import com.bringholm.minecraftdeobfuscator.remapper.AnonymousClassNameRemapper;
 import org.junit.Test;
 import org.objectweb.asm.commons.Remapper;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class MappingTests {
     @Test
@@ -27,4 +31,33 @@ public class MappingTests {
         assertEquals("Test$InnerClass$0$1", remapper.map("aa$a$0$1"));
         assertEquals("Test$InnerClass$9999", remapper.map("aa$a$9999"));
     }
+
+    @Test
+    public void testMemberMappingDescriptors() {
+        Mappings mappings = new Mappings(toStream("# Comment\na Entity\nb World 0cc175b9c0f1b6a831c399e269772661\n" +
+                        "c Chunk 92eb5ffee6ae2fec3ad71c777531578f 4a8a08f09d37b73795649038408b5f33\n"),
+                toStream("Entity a health\n" +
+                        "World a (LEntity;I)V addEntity\n" +
+                        "World b ([[LEntity;Ljava/lang/String;)[LWorld; copy\n" +
+                        "World c (LUnknown;)LEntity; unknown\n" +
+                        "World d (LEntity)V malformed\n" +
+                        "World e too many tokens here\n"));
+        assertEquals("net/minecraft/server/World", mappings.getClassName("b"));
+        assertEquals("b", mappings.getObfuscatedClassName("net/minecraft/server/World"));
+        assertEquals("0cc175b9c0f1b6a831c399e269772661", mappings.getHash("b"));
+        assertEquals("b", mappings.getClassWithHash("0cc175b9c0f1b6a831c399e269772661"));
+        assertNull(mappings.getHash("a"));
+        assertEquals("c", mappings.getClassWithStructuralHash("4a8a08f09d37b73795649038408b5f33"));
+        assertNull(mappings.getClassWithStructuralHash("0cc175b9c0f1b6a831c399e269772661"));
+        Map<String, String> members = mappings.getMemberMappings();
+        assertEquals(4, members.size());
+        assertEquals("health", members.get("net/minecraft/server/Entity.a"));
+        assertEquals("addEntity", members.get("net/minecraft/server/World.a(Lnet/minecraft/server/Entity;I)V"));
+        assertEquals("copy", members.get("net/minecraft/server/World.b([[Lnet/minecraft/server/Entity;Ljava/lang/String;)[Lnet/minecraft/server/World;"));
+        assertEquals("unknown", members.get("net/minecraft/server/World.c(LUnknown;)Lnet/minecraft/server/Entity;"));
+    }
+
+    private static InputStream toStream(String string) {
+        return new ByteArrayInputStream(string.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,104 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.remapper.AnonymousClassNameRemapper;
+import com.bringholm.minecraftdeobfuscator.remapper.MemberRemapper;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.bringholm.minecraftdeobfuscator.TestJars.addField;
+import static com.bringholm.minecraftdeobfuscator.TestJars.addMethod;
+import static com.bringholm.minecraftdeobfuscator.TestJars.createClass;
+import static com.bringholm.minecraftdeobfuscator.TestJars.load;
+import static org.junit.Assert.assertEquals;
+
+public class ReferenceIndexTest {
+    private JarLoader loader;
+    private ReferenceIndex index;
+    private Map<String, String> classMappings = new HashMap<>();
+    private Map<String, String> memberMappings = new HashMap<>();
+
+    @Before
+    public void createJar() throws IOException {
+        // b extends a without declaring anything, c, d and e use a and b
+        ClassWriter a = createClass("a", "java/lang/Object");
+        addMethod(a, "a", "()V");
+        addMethod(a, "b", "()V");
+        addField(a, "a", "I");
+        ClassWriter b = createClass("b", "a");
+        ClassWriter c = createClass("c", "java/lang/Object");
+        addMethod(c, Opcodes.ACC_PUBLIC, "a", "()V", methodVisitor -> {
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "a", "a", "()V", false);
+        });
+        ClassWriter d = createClass("d", "java/lang/Object");
+        addMethod(d, Opcodes.ACC_PUBLIC, "a", "()V", methodVisitor -> {
+            methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "b", "b", "()V", false);
+        });
+        ClassWriter e = createClass("e", "java/lang/Object");
+        addMethod(e, "a", "(Lb;)V");
+        loader = load(a.toByteArray(), b.toByteArray(), c.toByteArray(), d.toByteArray(), e.toByteArray());
+        index = ReferenceIndex.build(loader, DeobfuscationSession.REMAPPED_CLASSES);
+        classMappings.put("a", "net/minecraft/server/Base");
+        classMappings.put("b", "net/minecraft/server/Sub");
+        classMappings.put("c", "net/minecraft/server/Caller");
+        classMappings.put("d", "net/minecraft/server/SubCaller");
+        classMappings.put("e", "net/minecraft/server/User");
+        memberMappings.put("net/minecraft/server/Base.a()V", "tick");
+        memberMappings.put("net/minecraft/server/Base.a", "health");
+    }
+
+    @Test
+    public void testUnchanged() throws IOException {
+        assertEquals(5, index.size());
+        assertEquals(Collections.emptySet(), getAffectedClasses(classMappings, memberMappings));
+    }
+
+    @Test
+    public void testMemberMappingChanged() throws IOException {
+        Map<String, String> newMemberMappings = new HashMap<>(memberMappings);
+        newMemberMappings.put("net/minecraft/server/Base.a()V", "update");
+        // a declares the method and c calls it, b only inherits it without referencing it
+        assertEquals(ImmutableSet.of("a", "c"), getAffectedClasses(classMappings, newMemberMappings));
+    }
+
+    @Test
+    public void testClassMappingChanged() throws IOException {
+        Map<String, String> newClassMappings = new HashMap<>(classMappings);
+        newClassMappings.put("b", "net/minecraft/server/Derived");
+        // d calls a method through b and e takes it as a parameter, a and c never mention it
+        assertEquals(ImmutableSet.of("b", "d", "e"), getAffectedClasses(newClassMappings, memberMappings));
+    }
+
+    @Test
+    public void testInheritedMappingAdded() throws IOException {
+        Map<String, String> newMemberMappings = new HashMap<>(memberMappings);
+        newMemberMappings.put("net/minecraft/server/Sub.b()V", "render");
+        // Only references through b are mapped, which is what d calls
+        assertEquals(ImmutableSet.of("d"), getAffectedClasses(classMappings, newMemberMappings));
+    }
+
+    private Set<String> getAffectedClasses(Map<String, String> newClassMappings, Map<String, String> newMemberMappings) throws IOException {
+        Mappings oldMappings = createMappings(classMappings, memberMappings);
+        Mappings newMappings = createMappings(newClassMappings, newMemberMappings);
+        Remapper oldClassRemapper = new AnonymousClassNameRemapper(oldMappings.getClassMappings());
+        Remapper newClassRemapper = new AnonymousClassNameRemapper(newMappings.getClassMappings());
+        return index.getAffectedClasses(oldMappings, oldClassRemapper, new MemberRemapper(oldMappings.getMemberMappings(), loader, oldClassRemapper),
+                newMappings, newClassRemapper, new MemberRemapper(newMappings.getMemberMappings(), loader, newClassRemapper));
+    }
+
+    private static Mappings createMappings(Map<String, String> classMappings, Map<String, String> memberMappings) {
+        return new Mappings(classMappings, memberMappings, Collections.emptyMap(), Collections.emptyMap(), 0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.bringholm.minecraftdeobfuscator;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import com.bringholm.minecraftdeobfuscator.jario.ZipArchive;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Creates small classes and loads them as a jar, for the tests that need a class hierarchy.
+ */
+public class TestJars {
+    private TestJars() {
+    }
+
+    /**
+     * Starts a public class, whose members are added through the writer before {@link ClassWriter#toByteArray()}
+     * is called.
+     */
+    public static ClassWriter createClass(String name, String superName, String... interfaces) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, interfaces);
+        return writer;
+    }
+
+    /**
+     * Adds a void method, whose code runs the instructions added by the consumer and then returns.
+     */
+    public static void addMethod(ClassWriter writer, int access, String name, String desc, Consumer<MethodVisitor> code) {
+        MethodVisitor methodVisitor = writer.visitMethod(access, name, desc, null, null);
+        methodVisitor.visitCode();
+        code.accept(methodVisitor);
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    public static void addMethod(ClassWriter writer, String name, String desc) {
+        addMethod(writer, Opcodes.ACC_PUBLIC, name, desc, methodVisitor -> {
+        });
+    }
+
+    public static void addField(ClassWriter writer, String name, String desc) {
+        writer.visitField(Opcodes.ACC_PUBLIC, name, desc, null, null).visitEnd();
+    }
+
+    /**
+     * Writes the classes to a jar in memory and loads it.
+     */
+    public static JarLoader load(byte[]... classes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream outputStream = new JarOutputStream(bytes)) {
+            for (byte[] bytecode : classes) {
+                outputStream.putNextEntry(new JarEntry(new ClassReader(bytecode).getClassName() + ".class"));
+                outputStream.write(bytecode);
+                outputStream.closeEntry();
+            }
+        }
+        return new JarLoader(new ZipArchive(ByteBuffer.wrap(bytes.toByteArray())), JarLoader.DEFAULT_CACHE_SIZE, false);
+    }
+}
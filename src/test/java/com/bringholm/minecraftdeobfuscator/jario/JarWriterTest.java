@@ -0,0 +1,207 @@
+package com.bringholm.minecraftdeobfuscator.jario;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JarWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDefaultCompressionRoundTrip() throws IOException {
+        assertRoundTrip(Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    @Test
+    public void testStoredRoundTrip() throws IOException {
+        assertRoundTrip(JarWriter.STORED, null);
+    }
+
+    @Test
+    public void testBestCompressionRoundTrip() throws IOException {
+        assertRoundTrip(Deflater.BEST_COMPRESSION, null);
+    }
+
+    @Test
+    public void testParallelRoundTrip() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertRoundTrip(Deflater.BEST_COMPRESSION, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void testDuplicateEntry() throws IOException {
+        try (JarWriter writer = new JarWriter(folder.newFile("duplicate.jar"), null)) {
+            writer.write(resource("a.txt", "first"));
+            writer.write(resource("a.txt", "second"));
+        }
+    }
+
+    @Test
+    public void testRawCopy() throws IOException {
+        File input = writeJar(Deflater.BEST_COMPRESSION);
+        File output = folder.newFile("copy.jar");
+        copyRaw(input, output, Deflater.DEFAULT_COMPRESSION);
+        try (ZipFile inputZip = new ZipFile(input); ZipFile outputZip = new ZipFile(output)) {
+            assertEquals(inputZip.size(), outputZip.size());
+            for (Map.Entry<String, byte[]> entry : createEntries().entrySet()) {
+                ZipEntry inputEntry = inputZip.getEntry(entry.getKey());
+                ZipEntry outputEntry = outputZip.getEntry(entry.getKey());
+                // The compressed data should be copied as it was instead of being deflated again at another level
+                assertEquals(inputEntry.getMethod(), outputEntry.getMethod());
+                assertEquals(inputEntry.getCompressedSize(), outputEntry.getCompressedSize());
+                assertEquals(inputEntry.getCrc(), outputEntry.getCrc());
+                try (InputStream inputStream = outputZip.getInputStream(outputEntry)) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), IOUtils.toByteArray(inputStream));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRawCopyToStored() throws IOException {
+        File input = writeJar(Deflater.BEST_COMPRESSION);
+        File output = folder.newFile("stored-copy.jar");
+        copyRaw(input, output, JarWriter.STORED);
+        try (ZipFile outputZip = new ZipFile(output)) {
+            for (Map.Entry<String, byte[]> entry : createEntries().entrySet()) {
+                ZipEntry outputEntry = outputZip.getEntry(entry.getKey());
+                assertEquals(ZipEntry.STORED, outputEntry.getMethod());
+                try (InputStream inputStream = outputZip.getInputStream(outputEntry)) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), IOUtils.toByteArray(inputStream));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelRawAndCompressedEntries() throws IOException {
+        int threads = 2;
+        Map<String, byte[]> rawEntries = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            rawEntries.put("raw/" + i + ".txt", String.join("\n", Collections.nCopies(i, "raw " + i)).getBytes(StandardCharsets.UTF_8));
+        }
+        File input = folder.newFile("raw-input.jar");
+        try (JarWriter writer = new JarWriter(input, null)) {
+            for (Map.Entry<String, byte[]> entry : rawEntries.entrySet()) {
+                writer.write(new ResourceData(entry.getValue(), new JarEntry(entry.getKey())));
+            }
+        }
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        File output = folder.newFile("mixed.jar");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (ZipArchive archive = new ZipArchive(input); JarWriter writer = new JarWriter(output, null, executor, threads, Deflater.BEST_COMPRESSION)) {
+            int i = 0;
+            for (ZipArchive.Entry entry : archive.getEntries()) {
+                // Mostly raw entries, with a compressed one every so often
+                if (i++ % 10 == 0) {
+                    byte[] bytes = ("compressed " + i).getBytes(StandardCharsets.UTF_8);
+                    writer.write(new ResourceData(bytes, new JarEntry("compressed/" + i + ".txt")));
+                    expected.put("compressed/" + i + ".txt", bytes);
+                }
+                writer.write(new ResourceData(entry, archive.readRawData(entry)));
+                expected.put(entry.getName(), rawEntries.get(entry.getName()));
+                assertTrue("Too many pending entries: " + writer.getPendingCount(), writer.getPendingCount() < threads * 4);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try (ZipFile zipFile = new ZipFile(output)) {
+            assertEquals(expected.size(), zipFile.size());
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                assertEquals(entry.getKey(), zipEntry.getName());
+                try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), IOUtils.toByteArray(inputStream));
+                }
+            }
+        }
+    }
+
+    private File writeJar(int compressionLevel) throws IOException {
+        File file = folder.newFile("input" + compressionLevel + ".jar");
+        try (JarWriter writer = new JarWriter(file, null, null, 1, compressionLevel)) {
+            for (Map.Entry<String, byte[]> entry : createEntries().entrySet()) {
+                writer.write(new ResourceData(entry.getValue(), new JarEntry(entry.getKey())));
+            }
+        }
+        return file;
+    }
+
+    private static void copyRaw(File input, File output, int compressionLevel) throws IOException {
+        try (ZipArchive archive = new ZipArchive(input); JarWriter writer = new JarWriter(output, null, null, 1, compressionLevel)) {
+            for (ZipArchive.Entry entry : archive.getEntries()) {
+                writer.write(new ResourceData(entry, archive.readRawData(entry)));
+            }
+        }
+    }
+
+    private void assertRoundTrip(int compressionLevel, ExecutorService executor) throws IOException {
+        Map<String, byte[]> entries = createEntries();
+        File file = folder.newFile("level" + compressionLevel + ".jar");
+        try (JarWriter writer = new JarWriter(file, null, executor, 2, compressionLevel)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writer.write(new ResourceData(entry.getValue(), new JarEntry(entry.getKey())));
+            }
+        }
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(entries.size(), zipFile.size());
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                // The entries should be written in the order they were given in
+                ZipEntry zipEntry = zipEntries.nextElement();
+                assertEquals(entry.getKey(), zipEntry.getName());
+                assertEquals(compressionLevel == JarWriter.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED, zipEntry.getMethod());
+                assertEquals(entry.getValue().length, zipEntry.getSize());
+                try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), IOUtils.toByteArray(inputStream));
+                }
+            }
+            assertFalse(zipEntries.hasMoreElements());
+        }
+    }
+
+    private static Map<String, byte[]> createEntries() {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        entries.put("empty.txt", new byte[0]);
+        entries.put("assets/repeated.txt", String.join("\n", Collections.nCopies(1000, "minecraft")).getBytes(StandardCharsets.UTF_8));
+        entries.put("assets/snöwman.txt", "☃".getBytes(StandardCharsets.UTF_8));
+        byte[] random = new byte[100000];
+        new Random(0).nextBytes(random);
+        entries.put("assets/random.bin", random);
+        return entries;
+    }
+
+    private static ResourceData resource(String name, String content) {
+        return new ResourceData(content.getBytes(StandardCharsets.UTF_8), new JarEntry(name));
+    }
+}
@@ -0,0 +1,104 @@
+package com.bringholm.minecraftdeobfuscator.jario;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ZipArchiveTest {
+    private static final String STORED_NAME = "stored.txt";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private Map<String, byte[]> entries = new LinkedHashMap<>();
+    private File file;
+
+    @Before
+    public void createJar() throws IOException {
+        entries.put("a.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+        entries.put(STORED_NAME, "not compressed".getBytes(StandardCharsets.UTF_8));
+        entries.put("empty.txt", new byte[0]);
+        entries.put("assets/repeated.txt", String.join("\n", Collections.nCopies(1000, "minecraft")).getBytes(StandardCharsets.UTF_8));
+        entries.put("assets/snöwman.txt", "☃".getBytes(StandardCharsets.UTF_8));
+        file = folder.newFile("test.jar");
+        // JarOutputStream writes the sizes of deflated entries after their data, so they're only known from the central directory
+        try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                JarEntry jarEntry = new JarEntry(entry.getKey());
+                if (entry.getKey().equals(STORED_NAME)) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    jarEntry.setMethod(ZipEntry.STORED);
+                    jarEntry.setSize(entry.getValue().length);
+                    jarEntry.setCrc(crc.getValue());
+                }
+                outputStream.putNextEntry(jarEntry);
+                outputStream.write(entry.getValue());
+                outputStream.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testChannel() throws IOException {
+        try (ZipArchive archive = new ZipArchive(file)) {
+            assertFalse(archive.isMemoryMapped());
+            assertEntries(archive);
+        }
+    }
+
+    @Test
+    public void testMemoryMapped() throws IOException {
+        try (ZipArchive archive = new ZipArchive(file, true)) {
+            assertTrue(archive.isMemoryMapped());
+            assertEntries(archive);
+        }
+    }
+
+    @Test
+    public void testBuffer() throws IOException {
+        try (ZipArchive archive = new ZipArchive(ByteBuffer.wrap(Files.readAllBytes(file.toPath())))) {
+            assertEntries(archive);
+        }
+    }
+
+    private void assertEntries(ZipArchive archive) throws IOException {
+        List<ZipArchive.Entry> archiveEntries = archive.getEntries();
+        assertEquals(entries.size(), archiveEntries.size());
+        int i = 0;
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            ZipArchive.Entry archiveEntry = archiveEntries.get(i++);
+            assertEquals(entry.getKey(), archiveEntry.getName());
+            assertEquals(entry.getKey().equals(STORED_NAME) ? ZipArchive.METHOD_STORED : ZipArchive.METHOD_DEFLATED, archiveEntry.getMethod());
+            assertEquals(entry.getValue().length, archiveEntry.getSize());
+            CRC32 crc = new CRC32();
+            crc.update(entry.getValue());
+            assertEquals(crc.getValue(), archiveEntry.getCrc());
+            assertEquals(archiveEntry.getCompressedSize(), archive.readRawData(archiveEntry).length);
+            assertArrayEquals(entry.getKey(), entry.getValue(), archive.readData(archiveEntry));
+            assertEquals(archiveEntry, archive.getEntry(entry.getKey()));
+        }
+        assertNull(archive.getEntry("missing.txt"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.bringholm.minecraftdeobfuscator.remapper;
+
+import com.bringholm.minecraftdeobfuscator.jario.JarLoader;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.bringholm.minecraftdeobfuscator.TestJars.addField;
+import static com.bringholm.minecraftdeobfuscator.TestJars.addMethod;
+import static com.bringholm.minecraftdeobfuscator.TestJars.createClass;
+import static com.bringholm.minecraftdeobfuscator.TestJars.load;
+import static org.junit.Assert.assertEquals;
+
+public class MemberRemapperTest {
+    private JarLoader loader;
+    private Map<String, String> classMappings = new HashMap<>();
+
+    @Before
+    public void createJar() throws IOException {
+        // b extends a, which declares every member, and c extends b
+        ClassWriter base = createClass("a", "java/lang/Object");
+        addMethod(base, "a", "()V");
+        addMethod(base, "b", "(La;)V");
+        addMethod(base, "c", "()V");
+        addField(base, "a", "I");
+        addField(base, "b", "La;");
+        ClassWriter sub = createClass("b", "a");
+        ClassWriter subSub = createClass("c", "b");
+        loader = load(base.toByteArray(), sub.toByteArray(), subSub.toByteArray());
+        classMappings.put("a", "net/minecraft/server/Base");
+        classMappings.put("b", "net/minecraft/server/Sub");
+        classMappings.put("c", "net/minecraft/server/SubSub");
+    }
+
+    @Test
+    public void testMappedOnDeclarer() throws IOException {
+        Map<String, String> memberMappings = new HashMap<>();
+        memberMappings.put("net/minecraft/server/Base.a()V", "tick");
+        memberMappings.put("net/minecraft/server/Base.b(Lnet/minecraft/server/Base;)V", "copy");
+        memberMappings.put("net/minecraft/server/Base.a", "health");
+        MemberRemapper remapper = createRemapper(memberMappings);
+        for (String owner : new String[]{"a", "b", "c"}) {
+            assertEquals("tick", remapper.mapMethodName(owner, "a", "()V"));
+            assertEquals("copy", remapper.mapMethodName(owner, "b", "(La;)V"));
+            assertEquals("health", remapper.mapFieldName(owner, "a", "I"));
+            assertEquals("c", remapper.mapMethodName(owner, "c", "()V"));
+            assertEquals("b", remapper.mapFieldName(owner, "b", "La;"));
+        }
+    }
+
+    @Test
+    public void testMappedOnInheritingClass() throws IOException {
+        // b doesn't declare these members, it only inherits them from a
+        Map<String, String> memberMappings = new HashMap<>();
+        memberMappings.put("net/minecraft/server/Sub.c()V", "update");
+        memberMappings.put("net/minecraft/server/Sub.b", "parent");
+        MemberRemapper remapper = createRemapper(memberMappings);
+        assertEquals("update", remapper.mapMethodName("b", "c", "()V"));
+        assertEquals("parent", remapper.mapFieldName("b", "b", "La;"));
+        // References through the declaring class, or through a class below b, don't go through b's mapping
+        assertEquals("c", remapper.mapMethodName("a", "c", "()V"));
+        assertEquals("b", remapper.mapFieldName("a", "b", "La;"));
+        assertEquals("c", remapper.mapMethodName("c", "c", "()V"));
+        assertEquals("b", remapper.mapFieldName("c", "b", "La;"));
+        // Looked up a second time, from the cache of unmapped references
+        assertEquals("update", remapper.mapMethodName("b", "c", "()V"));
+        assertEquals("parent", remapper.mapFieldName("b", "b", "La;"));
+    }
+
+    @Test
+    public void testMappedOnInheritingClassAndDeclarer() throws IOException {
+        Map<String, String> memberMappings = new HashMap<>();
+        memberMappings.put("net/minecraft/server/Base.a()V", "tick");
+        memberMappings.put("net/minecraft/server/Sub.a()V", "subTick");
+        MemberRemapper remapper = createRemapper(memberMappings);
+        assertEquals("tick", remapper.mapMethodName("a", "a", "()V"));
+        assertEquals("subTick", remapper.mapMethodName("b", "a", "()V"));
+        assertEquals("tick", remapper.mapMethodName("c", "a", "()V"));
+    }
+
+    private MemberRemapper createRemapper(Map<String, String> memberMappings) throws IOException {
+        return new MemberRemapper(memberMappings, loader, new AnonymousClassNameRemapper(classMappings));
+    }
+}
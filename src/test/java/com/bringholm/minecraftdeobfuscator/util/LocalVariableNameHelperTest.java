@@ -0,0 +1,109 @@
+package com.bringholm.minecraftdeobfuscator.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalVariableNameHelperTest {
+    private static final String SNOWMAN = "☃";
+
+    @Test
+    public void testPrimitives() {
+        assertEquals("i", name("I"));
+        assertEquals("bool", name("Z"));
+        assertEquals("b", name("B"));
+        assertEquals("c", name("C"));
+        assertEquals("s", name("S"));
+        assertEquals("l", name("J"));
+        assertEquals("f", name("F"));
+        assertEquals("d", name("D"));
+    }
+
+    @Test
+    public void testObjects() {
+        assertEquals("string", name("Ljava/lang/String;"));
+        assertEquals("entity", name("Lnet/minecraft/server/Entity;"));
+        assertEquals("compound", name("Lnet/minecraft/server/CompoundNBTTag;"));
+    }
+
+    @Test
+    public void testArrays() {
+        assertEquals("ints", name("[I"));
+        assertEquals("ints", name("[[I"));
+        assertEquals("booleans", name("[Z"));
+        assertEquals("strings", name("[Ljava/lang/String;"));
+        assertEquals("statuses", name("[Lnet/minecraft/server/Status;"));
+        assertEquals("enumerations", name("[Lnet/minecraft/server/Enum;"));
+    }
+
+    @Test
+    public void testAbstractClasses() {
+        assertEquals("entity", name("Lnet/minecraft/server/AbstractEntity;"));
+        assertEquals("entityHorse", name("Lnet/minecraft/server/EntityHorseAbstract;"));
+        assertEquals("list", name("Ljava/util/AbstractList;"));
+    }
+
+    @Test
+    public void testReservedKeywords() {
+        assertEquals("clazz", name("Ljava/lang/Class;"));
+        assertEquals("pkg", name("Ljava/lang/Package;"));
+        assertEquals("enumeration", name("Ljava/lang/Enum;"));
+        assertEquals("bool", name("Ljava/lang/Boolean;"));
+    }
+
+    @Test
+    public void testNotObfuscated() {
+        assertTrue(LocalVariableNameHelper.isSnowman(SNOWMAN));
+        assertFalse(LocalVariableNameHelper.isSnowman("entity"));
+        LocalVariableNameHelper.Indices indices = new LocalVariableNameHelper.Indices();
+        assertEquals("entity", LocalVariableNameHelper.getVariableName("entity", "I", indices));
+        // Names that are kept aren't counted
+        assertEquals("i", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+    }
+
+    @Test
+    public void testRepeatedNames() {
+        LocalVariableNameHelper.Indices indices = new LocalVariableNameHelper.Indices();
+        assertEquals("i", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+        assertEquals("i2", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+        assertEquals("string", LocalVariableNameHelper.getVariableName(SNOWMAN, "Ljava/lang/String;", indices));
+        assertEquals("i3", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+        assertEquals("string2", LocalVariableNameHelper.getVariableName(SNOWMAN, "Ljava/lang/String;", indices));
+        // Different types can end up with the same name, which is counted together
+        assertEquals("c", LocalVariableNameHelper.getVariableName(SNOWMAN, "C", indices));
+        assertEquals("c2", LocalVariableNameHelper.getVariableName(SNOWMAN, "Lnet/minecraft/server/Case;", indices));
+    }
+
+    @Test
+    public void testManyNames() {
+        LocalVariableNameHelper.Indices indices = new LocalVariableNameHelper.Indices();
+        String[] descs = {"I", "Z", "B", "C", "S", "J", "F", "D", "[I", "[Z", "Ljava/lang/String;", "Ljava/lang/Object;"};
+        for (String desc : descs) {
+            assertEquals(name(desc), LocalVariableNameHelper.getVariableName(SNOWMAN, desc, indices));
+        }
+        for (String desc : descs) {
+            assertEquals(name(desc) + "2", LocalVariableNameHelper.getVariableName(SNOWMAN, desc, indices));
+        }
+    }
+
+    @Test
+    public void testReset() {
+        LocalVariableNameHelper.Indices indices = new LocalVariableNameHelper.Indices();
+        assertEquals("i", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+        assertEquals("i2", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+        indices.reset();
+        // The next method starts counting from the beginning again
+        assertEquals("i", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+        assertEquals("string", LocalVariableNameHelper.getVariableName(SNOWMAN, "Ljava/lang/String;", indices));
+        assertEquals("i2", LocalVariableNameHelper.getVariableName(SNOWMAN, "I", indices));
+    }
+
+    /**
+     * Names a single variable of the type, which is never numbered.
+     */
+    private static String name(String desc) {
+        return LocalVariableNameHelper.getVariableName(SNOWMAN, desc, new LocalVariableNameHelper.Indices());
+    }
+}
@@ -0,0 +1,66 @@
+package com.bringholm.minecraftdeobfuscator.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StructuralHasherTest {
+    @Test
+    public void testRewrittenClass() {
+        byte[] original = createClass("Hello");
+        // Copies the constant pool as it is, so even the bytes should be the same
+        ClassReader reader = new ClassReader(original);
+        ClassWriter copyWriter = new ClassWriter(reader, 0);
+        reader.accept(copyWriter, 0);
+        byte[] copy = copyWriter.toByteArray();
+        assertEquals(DigestUtils.md5Hex(original), DigestUtils.md5Hex(copy));
+        assertEquals(StructuralHasher.hash(original), StructuralHasher.hash(copy));
+
+        // Puts the constants in another order and drops the debug information
+        ClassWriter rewrittenWriter = new ClassWriter(0);
+        rewrittenWriter.newConst("Hello");
+        rewrittenWriter.newConst(42);
+        rewrittenWriter.newMethod("java/io/PrintStream", "println", "(Ljava/lang/String;)V", false);
+        new ClassReader(original).accept(rewrittenWriter, ClassReader.SKIP_DEBUG);
+        byte[] rewritten = rewrittenWriter.toByteArray();
+        assertNotEquals(DigestUtils.md5Hex(original), DigestUtils.md5Hex(rewritten));
+        assertEquals(StructuralHasher.hash(original), StructuralHasher.hash(rewritten));
+    }
+
+    @Test
+    public void testChangedConstant() {
+        assertNotEquals(StructuralHasher.hash(createClass("Hello")), StructuralHasher.hash(createClass("World")));
+    }
+
+    private static byte[] createClass(String message) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "a", null, "java/lang/Object", null);
+        writer.visitSource("Greeter.java", null);
+        writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "a", "I", null, null).visitEnd();
+        MethodVisitor methodVisitor = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "a", "(I)V", null, null);
+        methodVisitor.visitCode();
+        Label start = new Label();
+        methodVisitor.visitLabel(start);
+        methodVisitor.visitLineNumber(3, start);
+        methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+        methodVisitor.visitLdcInsn(message);
+        methodVisitor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/String;)V", false);
+        methodVisitor.visitLdcInsn(42);
+        methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, "a", "a", "I");
+        methodVisitor.visitInsn(Opcodes.RETURN);
+        Label end = new Label();
+        methodVisitor.visitLabel(end);
+        methodVisitor.visitLocalVariable("count", "I", null, start, end, 0);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}